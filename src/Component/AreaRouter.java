@@ -0,0 +1,500 @@
+package Component;
+
+import Component.Graph.*;
+import util.Throttle;
+
+import java.util.*;
+
+/**
+ * 分区路由。每条邻居路径属于一个区域，结点只保存自己所在区域内的完整拓扑，每个区域一个图。
+ * 同时属于多个区域的结点是区域边界结点，它把自己到其他区域内各结点的最短长度作为汇总路径（自己到目标结点的一条边）发布到每个区域中，
+ * 区域内的其他结点只需要知道这些汇总路径就能计算到其他区域的最短路径，不需要保存其他区域的拓扑。
+ * 为了避免环路，区域之间只通过骨干区域连接：边界结点只把从骨干区域收到的汇总路径继续发布到非骨干区域，非骨干区域收到的汇总路径只用于计算路由。
+ * 结点的路由图由所有区域的拓扑与收到的汇总路径合并而成，路由表与转发表都从路由图计算。
+ * 汇总路径按目标结点逐条发布，不做聚合，路由图中仍然有全网的每个结点。因此结点保存的状态与发送的 GraphInfo 的大小
+ * 是 O(所在区域的路径数 + 全网结点数)，而不是不分区时的 O(全网路径数)，仍然随全网结点数线性增长。
+ * 所有结点都在同一个区域时没有边界结点，路由图就是这个区域的拓扑，与不分区时相同。
+ * 区域拓扑的修改立即生效，合并到路由图与重新计算汇总路径则经过节流：短时间内的大量修改（例如路径反复断开又恢复）只引起一次合并，
+ * 修改持续不断时两次合并之间的间隔按指数增长。
+ * 设置了 OwnStateListener 之后进入链路状态模式：区域拓扑只由链路状态数据库修改，本结点的路径或汇总路径变化时通知监听者重新发布通告。
+ */
+public class AreaRouter implements NeighborPathListener
+{
+    /**
+     * 本结点在某个区域内的路径或发布的汇总路径发生变化时的回调。回调时持有 AreaRouter 的锁。
+     */
+    public interface OwnStateListener
+    {
+        void ownStateChanged(String areaId);
+    }
+
+    // 骨干区域，邻居配置中没有写出区域时也使用这个区域
+    public static final String BACKBONE_AREA = "0";
+
+    private final String nodeId;
+    private final GraphStorageMode storageMode;
+
+    // 路由图，本结点的最短路径都在这个图上计算
+    private final Graph routingGraph;
+
+    // 每个区域内的拓扑，不包含汇总路径
+    private final Map<String, Graph> areaGraphs;
+
+    // 邻居结点名称到所在区域的映射
+    private final Map<String, String> neighborAreas;
+
+    // 每个区域中收到的其他边界结点发布的汇总路径
+    private final Map<String, List<Path>> receivedSummaries;
+
+    // 本结点作为边界结点向每个区域发布的汇总路径
+    private volatile Map<String, List<Path>> ownSummaries;
+
+    // 本结点在每个区域内到每个邻居的路径，断开时长度为 INF
+    private final Map<String, Map<String, Path>> ownLinks;
+
+    // 链路状态模式下的监听者，其他模式为 null
+    private OwnStateListener ownStateListener;
+
+    private final byte[] areaLock = new byte[0];
+
+    // 合并到路由图的节流器
+    private final Throttle refreshThrottle;
+
+    /**
+     * @param routingGraph    本结点的路由图。
+     * @param storageMode     区域拓扑的存储方式。
+     * @param spfInitialDelay 拓扑没有变化一段时间后，第一次变化到合并的延迟，单位为毫秒。
+     * @param spfHoldTime     拓扑持续变化时两次合并之间最短的间隔，单位为毫秒。
+     * @param spfMaxHoldTime  拓扑持续变化时两次合并之间最长的间隔，单位为毫秒。
+     */
+    public AreaRouter(String nodeId, Graph routingGraph, GraphStorageMode storageMode, long spfInitialDelay, long spfHoldTime, long spfMaxHoldTime)
+    {
+        this.nodeId = nodeId;
+        this.routingGraph = routingGraph;
+        this.storageMode = storageMode;
+        this.areaGraphs = new TreeMap<>();
+        this.neighborAreas = new HashMap<>();
+        this.receivedSummaries = new HashMap<>();
+        this.ownSummaries = Collections.emptyMap();
+        this.ownLinks = new HashMap<>();
+        this.refreshThrottle = new Throttle(spfInitialDelay, spfHoldTime, spfMaxHoldTime, () ->
+        {
+            synchronized (areaLock)
+            {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * 进入链路状态模式。需要在添加邻居路径之前调用。
+     */
+    public void setOwnStateListener(OwnStateListener listener)
+    {
+        synchronized (areaLock)
+        {
+            this.ownStateListener = listener;
+        }
+    }
+
+    /**
+     * 保护所有区域状态的锁。链路状态数据库修改区域拓扑时也使用这个锁，保证加锁顺序一致。
+     */
+    Object getLock()
+    {
+        return areaLock;
+    }
+
+    /**
+     * 添加配置文件中的邻居路径。
+     *
+     * @param pathsByArea 区域到该区域内所有邻居路径的映射。
+     */
+    public void addNeighborPaths(Map<String, List<Path>> pathsByArea)
+    {
+        synchronized (areaLock)
+        {
+            for (Map.Entry<String, List<Path>> entry : pathsByArea.entrySet())
+            {
+                Graph areaGraph = areaGraphs.get(entry.getKey());
+                if (areaGraph == null)
+                {
+                    areaGraph = new Graph(nodeId, storageMode);
+                    // 边界结点每次计算汇总路径都需要本结点在区域内的最短路径
+                    areaGraph.enableIncrementalShortestPaths(nodeId);
+                    areaGraphs.put(entry.getKey(), areaGraph);
+                }
+                final Map<String, Path> links = ownLinks.computeIfAbsent(entry.getKey(), key -> new TreeMap<>());
+                for (Path path : entry.getValue())
+                {
+                    neighborAreas.put(path.getEndNodeId(), entry.getKey());
+                    links.put(path.getEndNodeId(), path);
+                }
+                if (ownStateListener == null)
+                {
+                    areaGraph.updatePaths(entry.getValue());
+                }
+            }
+            refresh();
+            if (ownStateListener != null)
+            {
+                for (String areaId : pathsByArea.keySet())
+                {
+                    ownStateListener.ownStateChanged(areaId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 本结点所在的所有区域。
+     */
+    public Set<String> getAreaIds()
+    {
+        synchronized (areaLock)
+        {
+            return new TreeSet<>(areaGraphs.keySet());
+        }
+    }
+
+    /**
+     * 本结点是否为区域边界结点。
+     */
+    public boolean isAreaBorderRouter()
+    {
+        synchronized (areaLock)
+        {
+            return areaGraphs.size() > 1;
+        }
+    }
+
+    /**
+     * 返回区域内的拓扑，本结点不在这个区域时返回 null。不要直接修改返回的图。
+     */
+    public Graph getAreaGraph(String areaId)
+    {
+        synchronized (areaLock)
+        {
+            return areaGraphs.get(areaId);
+        }
+    }
+
+    /**
+     * 返回区域内的所有路径，不包含汇总路径。本结点不在这个区域时返回空列表。
+     */
+    public List<Path> getAreaPathList(String areaId)
+    {
+        final Graph areaGraph = getAreaGraph(areaId);
+        return areaGraph == null ? Collections.emptyList() : areaGraph.getPathList();
+    }
+
+    /**
+     * 返回本结点在区域内所有连通的邻居路径。
+     */
+    public List<Path> getOwnLinks(String areaId)
+    {
+        synchronized (areaLock)
+        {
+            final List<Path> links = new ArrayList<>();
+            for (Path path : ownLinks.getOrDefault(areaId, Collections.emptyMap()).values())
+            {
+                if (path.getPathLength() != Graph.INF)
+                {
+                    links.add(path);
+                }
+            }
+            return links;
+        }
+    }
+
+    /**
+     * 返回本结点作为边界结点发布到区域内的汇总路径。
+     */
+    public List<Path> getOwnSummaries(String areaId)
+    {
+        return new ArrayList<>(ownSummaries.getOrDefault(areaId, Collections.emptyList()));
+    }
+
+    /**
+     * 返回要在区域内扩散的所有汇总路径，包括本结点发布的与收到的。
+     */
+    public List<Path> getSummaryList(String areaId)
+    {
+        synchronized (areaLock)
+        {
+            final List<Path> summaries = new ArrayList<>(ownSummaries.getOrDefault(areaId, Collections.emptyList()));
+            summaries.addAll(receivedSummaries.getOrDefault(areaId, Collections.emptyList()));
+            return summaries;
+        }
+    }
+
+    /**
+     * 更新一条本结点到邻居结点的路径，路径所在的区域由邻居结点决定。
+     */
+    public void updateNeighborPath(Path path)
+    {
+        synchronized (areaLock)
+        {
+            final String areaId = neighborAreas.get(path.getEndNodeId());
+            if (areaId == null)
+            {
+                return;
+            }
+            final Path old = ownLinks.get(areaId).put(path.getEndNodeId(), path);
+            if (ownStateListener == null)
+            {
+                updateArea(areaId, Collections.singletonList(path), null);
+            }
+            else if (old == null || old.getPathLength() != path.getPathLength())
+            {
+                // 区域拓扑由链路状态数据库根据新的通告修改
+                ownStateListener.ownStateChanged(areaId);
+            }
+        }
+    }
+
+    /**
+     * 更新区域内的路径。本结点不在这个区域时忽略。
+     *
+     * @param paths     要修改的区域内路径，长度为 INF 表示删除。
+     * @param summaries 邻居结点发来的该区域的全部汇总路径，为 null 时不修改汇总路径。
+     */
+    public void updateArea(String areaId, List<Path> paths, List<Path> summaries)
+    {
+        synchronized (areaLock)
+        {
+            final Graph areaGraph = areaGraphs.get(areaId);
+            if (areaGraph == null)
+            {
+                return;
+            }
+            final long oldVersion = areaGraph.getTopologyVersion();
+            areaGraph.updatePaths(paths);
+            if (summaries == null && areaGraph.getTopologyVersion() == oldVersion)
+            {
+                // 心跳超时等重复的修改不会改变拓扑，不需要重新合并
+                return;
+            }
+            if (summaries != null)
+            {
+                // 本结点发布的汇总路径由自己计算，不使用邻居转发回来的旧值
+                final List<Path> received = new ArrayList<>(summaries.size());
+                for (Path summary : summaries)
+                {
+                    if (!summary.getStartNodeId().equals(nodeId))
+                    {
+                        received.add(summary);
+                    }
+                }
+                receivedSummaries.put(areaId, received);
+            }
+            refreshThrottle.trigger();
+        }
+    }
+
+    /**
+     * 删除各区域拓扑中已经不可到达的结点。
+     */
+    public void pruneUnreachableNodes()
+    {
+        synchronized (areaLock)
+        {
+            for (Graph areaGraph : areaGraphs.values())
+            {
+                areaGraph.pruneUnreachableNodes(nodeId);
+            }
+        }
+    }
+
+    /**
+     * 重新计算本结点发布的汇总路径，并把区域拓扑与汇总路径合并到路由图中。调用时需要持有 areaLock。
+     */
+    private void refresh()
+    {
+        final Map<String, List<Path>> oldSummaries = ownSummaries;
+        final Map<String, Map<String, Double>> intraCosts = computeIntraCosts();
+
+        // 发布者在区域内已经不可到达的汇总路径不再使用，也不再扩散，否则邻居之间会一直互相转发失效的汇总路径
+        for (Map.Entry<String, List<Path>> entry : receivedSummaries.entrySet())
+        {
+            final Map<String, Double> reachable = intraCosts.get(entry.getKey());
+            entry.getValue().removeIf(summary -> !reachable.containsKey(summary.getStartNodeId()));
+        }
+
+        ownSummaries = areaGraphs.size() > 1 ? computeOwnSummaries(intraCosts) : Collections.emptyMap();
+
+        // 合并后路由图应有的所有路径。同一对结点之间有多条路径时取最短的
+        final Map<String, Path> merged = new HashMap<>();
+        for (Graph areaGraph : areaGraphs.values())
+        {
+            for (Path path : areaGraph.getPathList())
+            {
+                mergeShorter(merged, path);
+            }
+        }
+        for (List<Path> summaries : receivedSummaries.values())
+        {
+            for (Path summary : summaries)
+            {
+                mergeShorter(merged, summary);
+            }
+        }
+
+        // 与路由图当前的路径比较，只修改有变化的路径
+        final List<Path> pathsToUpdate = new ArrayList<>();
+        for (Path path : routingGraph.getPathList())
+        {
+            final Path target = merged.remove(pathKey(path));
+            if (target == null)
+            {
+                pathsToUpdate.add(new Path(path.getStartNodeId(), path.getEndNodeId(), Graph.INF));
+            }
+            else if (target.getPathLength() != path.getPathLength())
+            {
+                pathsToUpdate.add(target);
+            }
+        }
+        pathsToUpdate.addAll(merged.values());
+        if (!pathsToUpdate.isEmpty())
+        {
+            routingGraph.updatePaths(pathsToUpdate);
+        }
+
+        // 最后再通知监听者，监听者重新发布通告时可能再次进入 refresh
+        if (ownStateListener != null)
+        {
+            for (String areaId : areaGraphs.keySet())
+            {
+                if (!samePaths(oldSummaries.getOrDefault(areaId, Collections.emptyList()), ownSummaries.getOrDefault(areaId, Collections.emptyList())))
+                {
+                    ownStateListener.ownStateChanged(areaId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 两组路径的两端与长度是否完全相同，不考虑顺序。
+     */
+    private static boolean samePaths(List<Path> paths1, List<Path> paths2)
+    {
+        if (paths1.size() != paths2.size())
+        {
+            return false;
+        }
+        final Map<String, Double> lengths = new HashMap<>();
+        for (Path path : paths1)
+        {
+            lengths.put(pathKey(path), path.getPathLength());
+        }
+        for (Path path : paths2)
+        {
+            final Double length = lengths.get(pathKey(path));
+            if (length == null || length != path.getPathLength())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算本结点在每个区域内能到达的结点及最短长度，不包括本结点。调用时需要持有 areaLock。
+     */
+    private Map<String, Map<String, Double>> computeIntraCosts()
+    {
+        final Map<String, Map<String, Double>> intraCosts = new HashMap<>();
+        for (Map.Entry<String, Graph> entry : areaGraphs.entrySet())
+        {
+            final Map<String, Double> costs = new HashMap<>();
+            final RoutingTable table = entry.getValue().getRoutingTable(nodeId);
+            if (table != null)
+            {
+                for (RoutingTable.Route route : table.getRoutes())
+                {
+                    if (!route.getDestinationNodeId().equals(nodeId))
+                    {
+                        costs.put(route.getDestinationNodeId(), route.getCost());
+                    }
+                }
+            }
+            intraCosts.put(entry.getKey(), costs);
+        }
+        return intraCosts;
+    }
+
+    /**
+     * 计算本结点作为边界结点要向每个区域发布的汇总路径。调用时需要持有 areaLock。
+     *
+     * @param intraCosts 本结点在每个区域内能到达的结点及最短长度。
+     */
+    private Map<String, List<Path>> computeOwnSummaries(Map<String, Map<String, Double>> intraCosts)
+    {
+        final Map<String, Double> backboneCosts = intraCosts.get(BACKBONE_AREA);
+        final Map<String, List<Path>> summariesByArea = new HashMap<>();
+        for (String targetArea : areaGraphs.keySet())
+        {
+            final Map<String, Double> targetMembers = intraCosts.get(targetArea);
+            final Map<String, Double> best = new HashMap<>();
+
+            // 其他区域内的结点
+            for (Map.Entry<String, Map<String, Double>> entry : intraCosts.entrySet())
+            {
+                if (entry.getKey().equals(targetArea))
+                {
+                    continue;
+                }
+                for (Map.Entry<String, Double> cost : entry.getValue().entrySet())
+                {
+                    if (!targetMembers.containsKey(cost.getKey()))
+                    {
+                        best.merge(cost.getKey(), cost.getValue(), Math::min);
+                    }
+                }
+            }
+
+            // 从骨干区域收到的其他边界结点的汇总路径，只继续发布到非骨干区域
+            if (backboneCosts != null && !targetArea.equals(BACKBONE_AREA))
+            {
+                for (Path summary : receivedSummaries.getOrDefault(BACKBONE_AREA, Collections.emptyList()))
+                {
+                    final Double borderCost = backboneCosts.get(summary.getStartNodeId());
+                    final String destination = summary.getEndNodeId();
+                    if (borderCost != null && !destination.equals(nodeId) && !targetMembers.containsKey(destination))
+                    {
+                        best.merge(destination, borderCost + summary.getPathLength(), Math::min);
+                    }
+                }
+            }
+
+            // 每个目标结点一条汇总路径，汇总路径的数量与其他区域的结点数相同
+            final List<Path> summaries = new ArrayList<>(best.size());
+            for (Map.Entry<String, Double> entry : best.entrySet())
+            {
+                summaries.add(new Path(nodeId, entry.getKey(), entry.getValue()));
+            }
+            summariesByArea.put(targetArea, summaries);
+        }
+        return summariesByArea;
+    }
+
+    private static void mergeShorter(Map<String, Path> merged, Path path)
+    {
+        final String key = pathKey(path);
+        final Path existing = merged.get(key);
+        if (existing == null || path.getPathLength() < existing.getPathLength())
+        {
+            merged.put(key, path);
+        }
+    }
+
+    /**
+     * 路径是双向的，两个方向使用同一个键。
+     */
+    private static String pathKey(Path path)
+    {
+        final String start = path.getStartNodeId();
+        final String end = path.getEndNodeId();
+        return start.compareTo(end) < 0 ? start + '\0' + end : end + '\0' + start;
+    }
+}
@@ -0,0 +1,363 @@
+package Component;
+
+import Component.Graph.Graph;
+import Component.Graph.Path;
+import Component.Message.DistanceVector;
+import Component.Sender.TimingSender;
+import util.Broadcaster;
+import util.Throttle;
+import util.TimingWheel;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 距离向量路由（Bellman-Ford）。
+ * 结点不保存拓扑，只保存到每个目标的最短长度与下一跳，以及每个邻居最近一次发来的距离向量。
+ * 到目标的长度为所有邻居中 到邻居的长度 + 邻居到目标的长度 的最小值，达到 infinity 的目标视为不可到达。
+ * 每个发送周期把自己的距离向量发给所有邻居；路由变化时经过节流后发送（触发更新），不等待下一个周期。
+ * 等待期间的多次变化合并为一次发送，路由持续变化时两次触发更新的间隔按指数增长，避免计数到无穷时触发更新的数量爆炸。
+ * 发给邻居的向量使用带毒性逆转的水平分割：经过该邻居到达的目标，发给它时长度写为 infinity，避免两个结点之间的计数到无穷。
+ * 更长的环路仍然可能计数到无穷，infinity 限制了计数的上限。
+ */
+public class DistanceVectorRouter implements TimingSender, NeighborPathListener
+{
+    /**
+     * 到一个目标的路由。
+     */
+    public static class Route
+    {
+        private final String nextHopId;
+        private final double cost;
+
+        Route(String nextHopId, double cost)
+        {
+            this.nextHopId = nextHopId;
+            this.cost = cost;
+        }
+
+        public String getNextHopId()
+        {
+            return nextHopId;
+        }
+
+        public double getCost()
+        {
+            return cost;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Route))
+            {
+                return false;
+            }
+            final Route route = (Route) obj;
+            return route.cost == cost && route.nextHopId.equals(nextHopId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return nextHopId.hashCode() * 31 + Double.hashCode(cost);
+        }
+    }
+
+    private final String nodeId;
+    private final Broadcaster broadcaster;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    private final long sendInterval;
+
+    // 长度达到这个值的目标不可到达
+    private final double infinity;
+
+    // 到每个邻居的路径长度，断开时为 INF
+    private final Map<String, Double> linkCosts;
+
+    // 每个邻居最近一次发来的距离向量
+    private final Map<String, Map<String, Double>> neighborVectors;
+
+    // 当前的路由，目标名称到路由。每次变化时整体替换，读取时不需要加锁
+    private volatile Map<String, Route> routes;
+
+    // 路由变化的次数
+    private volatile long version;
+
+    // 路由最后一次变化的时间
+    private volatile long lastChangeTime;
+
+    private final byte[] routeLock = new byte[0];
+
+    // 定时发送距离向量的任务，start 之后才有
+    private TimingWheel.Timeout sendTimeout;
+
+    // 触发更新的节流器
+    private final Throttle triggeredUpdateThrottle;
+
+    /**
+     * @param neighborPorts 邻居结点名称到端口的映射。
+     * @param sendInterval  定时发送距离向量的间隔，单位为毫秒。
+     * @param infinity      视为不可到达的长度。
+     * @param floodInitialDelay 路由安静时第一次变化到触发更新的延迟，单位为毫秒。
+     * @param floodHoldTime     路由持续变化时两次触发更新之间最短的间隔，单位为毫秒。
+     * @param floodMaxHoldTime  路由持续变化时两次触发更新之间最长的间隔，单位为毫秒。
+     */
+    public DistanceVectorRouter(String nodeId, Broadcaster broadcaster, Map<String, Integer> neighborPorts, long sendInterval, double infinity, long floodInitialDelay, long floodHoldTime, long floodMaxHoldTime)
+    {
+        this.nodeId = nodeId;
+        this.broadcaster = broadcaster;
+        this.neighborPorts = neighborPorts;
+        this.sendInterval = sendInterval;
+        this.infinity = infinity;
+        this.linkCosts = new HashMap<>();
+        this.neighborVectors = new HashMap<>();
+        this.routes = Collections.singletonMap(nodeId, new Route(nodeId, 0));
+        this.lastChangeTime = System.currentTimeMillis();
+        this.triggeredUpdateThrottle = new Throttle(floodInitialDelay, floodHoldTime, floodMaxHoldTime, this::sendVectors);
+    }
+
+    public void start()
+    {
+        // 发送距离向量需要遍历路由表并逐个邻居发送，在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+        sendTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(this::sendVectors), 0, sendInterval);
+    }
+
+    public void stop()
+    {
+        sendTimeout.cancel();
+    }
+
+    /**
+     * 添加配置文件中的邻居路径。
+     */
+    public void addNeighborPaths(List<Path> paths)
+    {
+        synchronized (routeLock)
+        {
+            for (Path path : paths)
+            {
+                linkCosts.put(path.getEndNodeId(), path.getPathLength());
+            }
+            recompute();
+        }
+    }
+
+    /**
+     * 到邻居的路径变化。断开时同时丢弃这个邻居的距离向量，它重新连上后会发来新的。
+     */
+    public void updateNeighborPath(Path path)
+    {
+        final boolean changed;
+        synchronized (routeLock)
+        {
+            final Double old = linkCosts.get(path.getEndNodeId());
+            if (old == null || old == path.getPathLength())
+            {
+                return;
+            }
+            linkCosts.put(path.getEndNodeId(), path.getPathLength());
+            if (path.getPathLength() == Graph.INF)
+            {
+                neighborVectors.remove(path.getEndNodeId());
+            }
+            changed = recompute();
+        }
+        if (changed)
+        {
+            triggeredUpdateThrottle.trigger();
+        }
+    }
+
+    /**
+     * 处理邻居发来的距离向量，它替换这个邻居之前的向量。不是邻居发来的向量直接丢弃。
+     */
+    public void receive(DistanceVector vector)
+    {
+        final String senderId = vector.getSenderId();
+        final Map<String, Double> costs = new HashMap<>();
+        for (Path route : vector.getRouteList())
+        {
+            costs.put(route.getEndNodeId(), route.getPathLength());
+        }
+
+        final boolean changed;
+        synchronized (routeLock)
+        {
+            final Double linkCost = linkCosts.get(senderId);
+            if (linkCost == null || linkCost == Graph.INF)
+            {
+                return;
+            }
+            if (costs.equals(neighborVectors.put(senderId, costs)))
+            {
+                return;
+            }
+            changed = recompute();
+        }
+        // 触发更新
+        if (changed)
+        {
+            triggeredUpdateThrottle.trigger();
+        }
+    }
+
+    /**
+     * 重新计算所有路由，返回路由是否发生变化。长度相同时保留原来的下一跳，避免路由来回切换。调用时需要持有 routeLock。
+     */
+    private boolean recompute()
+    {
+        final Map<String, Route> oldRoutes = routes;
+        final Map<String, Route> newRoutes = new TreeMap<>();
+        newRoutes.put(nodeId, new Route(nodeId, 0));
+        for (Map.Entry<String, Double> link : linkCosts.entrySet())
+        {
+            final String neighborId = link.getKey();
+            final double linkCost = link.getValue();
+            if (linkCost == Graph.INF)
+            {
+                continue;
+            }
+            offer(oldRoutes, newRoutes, neighborId, neighborId, linkCost);
+            final Map<String, Double> vector = neighborVectors.get(neighborId);
+            if (vector == null)
+            {
+                continue;
+            }
+            for (Map.Entry<String, Double> entry : vector.entrySet())
+            {
+                offer(oldRoutes, newRoutes, entry.getKey(), neighborId, linkCost + entry.getValue());
+            }
+        }
+
+        if (newRoutes.equals(oldRoutes))
+        {
+            return false;
+        }
+        routes = Collections.unmodifiableMap(newRoutes);
+        version++;
+        lastChangeTime = System.currentTimeMillis();
+        return true;
+    }
+
+    private void offer(Map<String, Route> oldRoutes, Map<String, Route> newRoutes, String destinationId, String nextHopId, double cost)
+    {
+        if (cost < 0 || cost >= infinity || destinationId.equals(nodeId))
+        {
+            return;
+        }
+        final Route existing = newRoutes.get(destinationId);
+        if (existing == null || cost < existing.cost)
+        {
+            newRoutes.put(destinationId, new Route(nextHopId, cost));
+        }
+        else if (cost == existing.cost)
+        {
+            final Route old = oldRoutes.get(destinationId);
+            if (old != null && old.nextHopId.equals(nextHopId))
+            {
+                newRoutes.put(destinationId, new Route(nextHopId, cost));
+            }
+        }
+    }
+
+    /**
+     * 给每个邻居发送距离向量。不包含本结点与接收者自己，经过接收者的目标长度写为 infinity。
+     */
+    private void sendVectors()
+    {
+        final Map<String, Route> current = routes;
+        for (Map.Entry<String, Integer> neighbor : neighborPorts.entrySet())
+        {
+            final String neighborId = neighbor.getKey();
+            final List<Path> routeList = new ArrayList<>(current.size());
+            for (Map.Entry<String, Route> entry : current.entrySet())
+            {
+                final String destinationId = entry.getKey();
+                if (destinationId.equals(nodeId) || destinationId.equals(neighborId))
+                {
+                    continue;
+                }
+                final Route route = entry.getValue();
+                routeList.add(new Path(nodeId, destinationId, route.nextHopId.equals(neighborId) ? infinity : route.cost));
+            }
+            try
+            {
+                broadcaster.send(new DistanceVector(nodeId, routeList), neighbor.getValue());
+            }
+            catch (IOException e)
+            {
+                System.err.println("距离向量发送出现错误");
+                System.err.println(e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * 返回到目标结点的路由，不可到达时返回 null。
+     */
+    public Route getRoute(String destinationId)
+    {
+        return routes.get(destinationId);
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public long getLastChangeTime()
+    {
+        return lastChangeTime;
+    }
+
+    /**
+     * 保存的路由条数与所有邻居距离向量的条数之和。
+     */
+    public int getStateSize()
+    {
+        synchronized (routeLock)
+        {
+            int size = routes.size();
+            for (Map<String, Double> vector : neighborVectors.values())
+            {
+                size += vector.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * 以与链路状态路由相同的格式输出路由。距离向量路由只知道下一跳，路径写为 本结点、下一跳、...、目标。
+     */
+    public void printRoutes()
+    {
+        Calendar calendar = Calendar.getInstance();
+        System.out.printf("%02d:%02d:%02d\n", calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+
+        for (Map.Entry<String, Route> entry : routes.entrySet())
+        {
+            final String destinationId = entry.getKey();
+            final Route route = entry.getValue();
+            final String pathString;
+            if (destinationId.equals(nodeId))
+            {
+                pathString = nodeId;
+            }
+            else if (destinationId.equals(route.nextHopId))
+            {
+                pathString = nodeId + destinationId;
+            }
+            else
+            {
+                pathString = nodeId + route.nextHopId + "..." + destinationId;
+            }
+            System.out.printf("least-cost path to node %s: %-20s and the cost is %-6.2f\n", destinationId, pathString, route.cost);
+        }
+        System.out.println();
+    }
+}
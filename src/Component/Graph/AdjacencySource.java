@@ -0,0 +1,23 @@
+package Component.Graph;
+
+/**
+ * 可以按结点编号读取邻居的图数据来源。用于需要直接读取可变图数据的算法。
+ */
+interface AdjacencySource
+{
+    /**
+     * 结点编号的上限，所有结点编号都小于这个值。
+     */
+    int getNodeCount();
+
+    /**
+     * 两个结点之间的路径长度，不直接相通时为 Graph.INF。
+     */
+    double getWeight(int from, int to);
+
+    /**
+     * 把结点 node 的所有邻居编号和路径长度写入 targets 与 weights（长度至少为 getNodeCount()），返回邻居数量。
+     * 不包括结点自己。
+     */
+    int getNeighbors(int node, int[] targets, double[] weights);
+}
@@ -0,0 +1,80 @@
+package Component.Graph;
+
+/**
+ * 全源最短路径的结果。最短长度与下一跳都保存在以槽位编号为下标、按行展开的基本类型矩阵中：
+ * 第 source 行第 destination 列的下标为 source * getNodeCount() + destination。
+ * 最短长度使用 float 保存以减小内存占用，不可到达为 Graph.INF；下一跳为邻居的槽位编号，不可到达为 -1。
+ */
+public class AllPairsResult
+{
+    private final GraphSnapshot snapshot;
+    private final int nodeCount;
+    private final float[] distances;
+    private final int[] nextHops;
+
+    AllPairsResult(GraphSnapshot snapshot, float[] distances, int[] nextHops)
+    {
+        this.snapshot = snapshot;
+        this.nodeCount = snapshot.getAdjacency().getNodeCount();
+        this.distances = distances;
+        this.nextHops = nextHops;
+    }
+
+    /**
+     * 计算时图的拓扑版本。
+     */
+    public long getVersion()
+    {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * 矩阵的行数与列数，等于计算时的槽位数量。
+     */
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * 返回槽位上的结点名称，空槽位返回 null。
+     */
+    public String getNodeId(int index)
+    {
+        return snapshot.getNodeId(index);
+    }
+
+    /**
+     * 返回结点名称对应的槽位，不存在时返回 -1。
+     */
+    public int indexOf(String nodeId)
+    {
+        return snapshot.indexOf(nodeId);
+    }
+
+    public float getDistance(int source, int destination)
+    {
+        return distances[source * nodeCount + destination];
+    }
+
+    public int getNextHop(int source, int destination)
+    {
+        return nextHops[source * nodeCount + destination];
+    }
+
+    /**
+     * 按行展开的最短长度矩阵，不要修改。
+     */
+    public float[] getDistanceMatrix()
+    {
+        return distances;
+    }
+
+    /**
+     * 按行展开的下一跳矩阵，不要修改。
+     */
+    public int[] getNextHopMatrix()
+    {
+        return nextHops;
+    }
+}
@@ -0,0 +1,138 @@
+package Component.Graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 全源最短路径。在同一个只读快照上，以每个结点为起点各运行一次 Dijkstra，各起点之间通过 ForkJoinPool 并行计算。
+ * 每个工作线程只分配一次计算用的数组，计算单个起点时不再分配任何对象。
+ */
+public class AllPairsShortestPaths
+{
+    // 每个任务至少负责的起点数量，少于这个数量时不再拆分
+    private static final int SOURCES_PER_TASK = 8;
+
+    /**
+     * 每个工作线程自己的计算数组。
+     */
+    private static class Scratch
+    {
+        final ShortestPathEngine engine;
+        final int[] prevNode;
+        final double[] distances;
+        final int[] settledOrder;
+        final int[] nextHop;
+
+        Scratch(int nodeCount)
+        {
+            engine = new ShortestPathEngine(nodeCount);
+            prevNode = new int[nodeCount];
+            distances = new double[nodeCount];
+            settledOrder = new int[nodeCount];
+            nextHop = new int[nodeCount];
+        }
+    }
+
+    /**
+     * 在 pool 中计算快照中所有结点之间的最短路径。
+     */
+    public static AllPairsResult compute(GraphSnapshot snapshot, ForkJoinPool pool)
+    {
+        final CompactAdjacency adjacency = snapshot.getAdjacency();
+        final int nodeCount = adjacency.getNodeCount();
+        final float[] distances = new float[nodeCount * nodeCount];
+        final int[] nextHops = new int[nodeCount * nodeCount];
+
+        final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>()
+        {
+            @Override
+            protected Scratch initialValue()
+            {
+                return new Scratch(nodeCount);
+            }
+        };
+
+        pool.invoke(new SourceRangeTask(snapshot, scratch, 0, nodeCount, distances, nextHops));
+        return new AllPairsResult(snapshot, distances, nextHops);
+    }
+
+    /**
+     * 计算 [from, to) 范围内的起点，范围太大时拆成两半并行计算。
+     */
+    private static class SourceRangeTask extends RecursiveAction
+    {
+        // RecursiveAction 实现了 Serializable，这个任务不会被序列化
+        private static final long serialVersionUID = 1L;
+
+        private final GraphSnapshot snapshot;
+        private final ThreadLocal<Scratch> scratch;
+        private final int from;
+        private final int to;
+        private final float[] distances;
+        private final int[] nextHops;
+
+        SourceRangeTask(GraphSnapshot snapshot, ThreadLocal<Scratch> scratch, int from, int to, float[] distances, int[] nextHops)
+        {
+            this.snapshot = snapshot;
+            this.scratch = scratch;
+            this.from = from;
+            this.to = to;
+            this.distances = distances;
+            this.nextHops = nextHops;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > SOURCES_PER_TASK)
+            {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new SourceRangeTask(snapshot, scratch, from, middle, distances, nextHops),
+                        new SourceRangeTask(snapshot, scratch, middle, to, distances, nextHops));
+                return;
+            }
+
+            final Scratch local = scratch.get();
+            for (int source = from; source < to; source++)
+            {
+                computeSource(local, source);
+            }
+        }
+
+        /**
+         * 计算一个起点，把最短长度与下一跳写入结果矩阵的第 source 行。
+         */
+        private void computeSource(Scratch local, int source)
+        {
+            final int nodeCount = local.distances.length;
+            final int rowOffset = source * nodeCount;
+
+            // 空槽位没有任何路径，整行都不可到达
+            if (snapshot.getNodeId(source) == null)
+            {
+                Arrays.fill(distances, rowOffset, rowOffset + nodeCount, Graph.INF);
+                Arrays.fill(nextHops, rowOffset, rowOffset + nodeCount, -1);
+                return;
+            }
+
+            final int settledCount = local.engine.run(snapshot.getAdjacency(), source, local.prevNode, local.distances, local.settledOrder);
+
+            // 按确定最短路径的顺序，上一结点的下一跳总是先算出来
+            Arrays.fill(local.nextHop, -1);
+            local.nextHop[source] = source;
+            for (int i = 1; i < settledCount; i++)
+            {
+                final int node = local.settledOrder[i];
+                final int prev = local.prevNode[node];
+                local.nextHop[node] = prev == source ? node : local.nextHop[prev];
+            }
+
+            for (int i = 0; i < nodeCount; i++)
+            {
+                distances[rowOffset + i] = (float) local.distances[i];
+            }
+            System.arraycopy(local.nextHop, 0, nextHops, rowOffset, nodeCount);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package Component.Graph;
+
+/**
+ * 图的紧凑邻接表视图（CSR 格式）。创建后不可修改，可以在锁外被多个线程同时读取。
+ * 结点 i 的所有邻居为 targets[offsets[i]] 到 targets[offsets[i + 1] - 1]，对应的路径长度保存在 weights 的相同下标处。
+ */
+public class CompactAdjacency
+{
+    private final int nodeCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    public CompactAdjacency(int nodeCount, int[] offsets, int[] targets, double[] weights)
+    {
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * 从任意图数据来源创建视图。
+     */
+    static CompactAdjacency from(AdjacencySource source)
+    {
+        final int nodeCount = source.getNodeCount();
+        final int[] offsets = new int[nodeCount + 1];
+        final int[] neighborTargets = new int[nodeCount];
+        final double[] neighborWeights = new double[nodeCount];
+
+        // 先数出每个结点的邻居数量，得到每一行的起始位置
+        for (int node = 0; node < nodeCount; node++)
+        {
+            offsets[node + 1] = offsets[node] + source.getNeighbors(node, neighborTargets, neighborWeights);
+        }
+
+        final int[] targets = new int[offsets[nodeCount]];
+        final double[] weights = new double[offsets[nodeCount]];
+        for (int node = 0; node < nodeCount; node++)
+        {
+            final int degree = source.getNeighbors(node, neighborTargets, neighborWeights);
+            System.arraycopy(neighborTargets, 0, targets, offsets[node], degree);
+            System.arraycopy(neighborWeights, 0, weights, offsets[node], degree);
+        }
+        return new CompactAdjacency(nodeCount, offsets, targets, weights);
+    }
+
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * 结点 node 的第一条边在 targets/weights 中的下标。
+     */
+    public int edgeBegin(int node)
+    {
+        return offsets[node];
+    }
+
+    /**
+     * 结点 node 的最后一条边之后的下标。
+     */
+    public int edgeEnd(int node)
+    {
+        return offsets[node + 1];
+    }
+
+    public int edgeTarget(int edge)
+    {
+        return targets[edge];
+    }
+
+    public double edgeWeight(int edge)
+    {
+        return weights[edge];
+    }
+}
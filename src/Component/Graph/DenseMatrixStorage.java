@@ -0,0 +1,106 @@
+package Component.Graph;
+
+import java.util.Arrays;
+
+/**
+ * 邻接矩阵存储。例如 paths[1][2] 即为 1 号槽位到 2 号槽位的路径长度，不直接相通则为 INF。
+ * 容量不够时按倍数扩大，因此逐个加入 n 个结点的总复制量是 O(n²) 而不是 O(n³)。
+ */
+class DenseMatrixStorage implements GraphStorage
+{
+    private double[][] paths;
+
+    // 已经使用的槽位数量
+    private int slotCount;
+
+    private int edgeCount;
+
+    DenseMatrixStorage()
+    {
+        paths = new double[0][0];
+    }
+
+    public GraphStorageMode getMode()
+    {
+        return GraphStorageMode.DENSE;
+    }
+
+    public int getNodeCount()
+    {
+        return slotCount;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    public void ensureSlots(int slotCount)
+    {
+        if (slotCount > paths.length)
+        {
+            final int capacity = Math.max(slotCount, Math.max(4, paths.length * 2));
+            final double[][] newPaths = new double[capacity][];
+            for (int row = 0; row < capacity; row++)
+            {
+                newPaths[row] = new double[capacity];
+                // 先把整个矩阵都设置为 INF 值，否则会出现距离 0
+                Arrays.fill(newPaths[row], Graph.INF);
+                if (row < paths.length)
+                {
+                    System.arraycopy(paths[row], 0, newPaths[row], 0, paths.length);
+                }
+            }
+            paths = newPaths;
+        }
+        this.slotCount = Math.max(this.slotCount, slotCount);
+    }
+
+    public double getWeight(int from, int to)
+    {
+        return paths[from][to];
+    }
+
+    public void setWeight(int from, int to, double weight)
+    {
+        if (from == to)
+        {
+            return;
+        }
+        final double oldWeight = paths[from][to];
+        if (oldWeight == Graph.INF && weight != Graph.INF)
+        {
+            edgeCount++;
+        }
+        else if (oldWeight != Graph.INF && weight == Graph.INF)
+        {
+            edgeCount--;
+        }
+        paths[from][to] = weight;
+        paths[to][from] = weight;
+    }
+
+    public void clearNode(int node)
+    {
+        for (int i = 0; i < slotCount; i++)
+        {
+            setWeight(node, i, Graph.INF);
+        }
+    }
+
+    public int getNeighbors(int node, int[] targets, double[] weights)
+    {
+        final double[] row = paths[node];
+        int count = 0;
+        for (int i = 0; i < slotCount; i++)
+        {
+            if (i != node && row[i] != Graph.INF)
+            {
+                targets[count] = i;
+                weights[count] = row[i];
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,177 @@
+package Component.Graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 由最短路径结果编译出的转发表（FIB）。以目标结点的槽位编号为下标保存下一跳端口、下一跳结点与最短长度。
+ * 转发表不可修改，查询时不加锁也不分配任何对象，适合需要高频查询下一跳的转发逻辑使用。
+ */
+public class ForwardingTable
+{
+    // 目标不可到达
+    public static final int NO_ROUTE = -1;
+
+    // 目标就是本结点
+    public static final int LOCAL = -2;
+
+    private final GraphSnapshot snapshot;
+    private final int sourceIndex;
+
+    // 编译时使用的邻居端口映射
+    private final Map<String, Integer> neighborPorts;
+
+    // 到每个槽位的下一跳端口
+    private final int[] nextHopPorts;
+
+    // 到每个槽位的下一跳结点的槽位编号，不可到达为 -1
+    private final int[] nextHopIndexes;
+
+    // 到每个槽位的最短长度，不可到达为 Graph.INF
+    private final double[] costs;
+
+    private ForwardingTable(GraphSnapshot snapshot, int sourceIndex, Map<String, Integer> neighborPorts, int[] nextHopPorts, int[] nextHopIndexes, double[] costs)
+    {
+        this.snapshot = snapshot;
+        this.sourceIndex = sourceIndex;
+        this.neighborPorts = neighborPorts;
+        this.nextHopPorts = nextHopPorts;
+        this.nextHopIndexes = nextHopIndexes;
+        this.costs = costs;
+    }
+
+    /**
+     * 编译转发表。
+     *
+     * @param prevNode      最短路径结果的上一结点编号数组。
+     * @param distances     最短路径结果的最短长度数组。
+     * @param neighborPorts 本结点所有邻居的名称到端口的映射。
+     */
+    static ForwardingTable compile(GraphSnapshot snapshot, int sourceIndex, int[] prevNode, double[] distances, Map<String, Integer> neighborPorts)
+    {
+        final int nodeCount = distances.length;
+        final int[] nextHopIndexes = new int[nodeCount];
+        final int[] nextHopPorts = new int[nodeCount];
+        final int[] stack = new int[nodeCount];
+        Arrays.fill(nextHopIndexes, -1);
+        nextHopIndexes[sourceIndex] = sourceIndex;
+
+        // 沿上一结点往回走，直到遇到已知下一跳的结点，再把下一跳填回经过的结点。每个结点只会被填一次
+        for (int node = 0; node < nodeCount; node++)
+        {
+            if (distances[node] == Graph.INF || nextHopIndexes[node] != -1)
+            {
+                continue;
+            }
+            int top = 0;
+            int current = node;
+            while (nextHopIndexes[current] == -1 && prevNode[current] != sourceIndex)
+            {
+                stack[top++] = current;
+                current = prevNode[current];
+            }
+            final int hop = nextHopIndexes[current] == -1 ? current : nextHopIndexes[current];
+            nextHopIndexes[current] = hop;
+            while (top > 0)
+            {
+                nextHopIndexes[stack[--top]] = hop;
+            }
+        }
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            if (node == sourceIndex)
+            {
+                nextHopPorts[node] = LOCAL;
+            }
+            else if (nextHopIndexes[node] == -1)
+            {
+                nextHopPorts[node] = NO_ROUTE;
+            }
+            else
+            {
+                final Integer port = neighborPorts.get(snapshot.getNodeId(nextHopIndexes[node]));
+                nextHopPorts[node] = port == null ? NO_ROUTE : port;
+            }
+        }
+        return new ForwardingTable(snapshot, sourceIndex, neighborPorts, nextHopPorts, nextHopIndexes, Arrays.copyOf(distances, nodeCount));
+    }
+
+    /**
+     * 编译时图的拓扑版本。
+     */
+    public long getVersion()
+    {
+        return snapshot.getVersion();
+    }
+
+    public String getSourceNodeId()
+    {
+        return snapshot.getNodeId(sourceIndex);
+    }
+
+    Map<String, Integer> getNeighborPorts()
+    {
+        return neighborPorts;
+    }
+
+    /**
+     * 返回目标结点的槽位编号，不存在时返回 -1。查询多次时可以先取得编号，再用编号查询。
+     */
+    public int indexOf(String destinationNodeId)
+    {
+        return snapshot.indexOf(destinationNodeId);
+    }
+
+    /**
+     * 查询到目标槽位的下一跳端口。不可到达返回 NO_ROUTE，目标是本结点返回 LOCAL。
+     */
+    public int lookup(int destinationIndex)
+    {
+        if (destinationIndex < 0 || destinationIndex >= nextHopPorts.length)
+        {
+            return NO_ROUTE;
+        }
+        return nextHopPorts[destinationIndex];
+    }
+
+    /**
+     * 查询到目标结点的下一跳端口。不可到达返回 NO_ROUTE，目标是本结点返回 LOCAL。
+     */
+    public int lookup(String destinationNodeId)
+    {
+        return lookup(snapshot.indexOf(destinationNodeId));
+    }
+
+    /**
+     * 查询到目标槽位的下一跳结点的槽位编号，不可到达返回 -1。
+     */
+    public int getNextHopIndex(int destinationIndex)
+    {
+        if (destinationIndex < 0 || destinationIndex >= nextHopIndexes.length)
+        {
+            return -1;
+        }
+        return nextHopIndexes[destinationIndex];
+    }
+
+    /**
+     * 查询到目标槽位的最短长度，不可到达返回 Graph.INF。
+     */
+    public double getCost(int destinationIndex)
+    {
+        if (destinationIndex < 0 || destinationIndex >= costs.length)
+        {
+            return Graph.INF;
+        }
+        return costs[destinationIndex];
+    }
+
+    /**
+     * 返回槽位上的结点名称。
+     */
+    public String getNodeId(int index)
+    {
+        return snapshot.getNodeId(index);
+    }
+}
@@ -1,28 +1,76 @@
 package Component.Graph;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * 结点使用的图对象。
+ * 写入者持有锁修改图，只增加版本号，不复制拓扑；读取者发现已发布的快照落后于当前版本时，才持有锁发布一个不可变的 GraphSnapshot。
+ * 连续的多次修改只需要创建一次快照，快照没有落后时所有读取操作都只读取已发布的快照，不需要加锁。
  */
 public class Graph
 {
-    // 所有结点的名称
-    private List<String> nodeIds;
+    // 所有结点的名称，名称与槽位编号之间可以 O(1) 互查
+    private NodeIdIndex nodeIds;
 
     /*
-     * 结点之间的路径长度。
-     * 例如 paths[1][2] 即为 1 号结点到 2 号结点的路径长度，他们的名字分别为 nodeIds[1] 和 nodeIds[2]。
-     * paths[1][2] 与 paths[2][1] 一定是相等的。
+     * 结点之间的路径长度，以 nodeIds 的槽位编号为下标。
+     * 例如 storage.getWeight(1, 2) 即为 1 号结点到 2 号结点的路径长度，他们的名字分别为 nodeIds.get(1) 和 nodeIds.get(2)。
+     * 路径都是双向的，(1, 2) 与 (2, 1) 一定是相等的。
      * 如果结点直接不直接相通，则值为 INF（即-1）。
      */
-    private double[][] paths;
+    private GraphStorage storage;
+
+    // 配置的存储方式，为 AUTO 时根据图的规模与密度在矩阵与邻接表之间切换
+    private final GraphStorageMode storageMode;
+
+    // 跳过已删除结点的邻居数据来源，最短路径计算与快照都通过它读取 storage
+    private final AdjacencySource liveAdjacency = new LiveAdjacencySource();
+
+    // 是否已经安排了一次回收
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+    // 动态维护的最短路径树，开启增量计算后不为 null
+    private IncrementalShortestPathTree shortestPathTree;
+
+    // 拓扑版本号，结点或路径每发生一次变化加一
+    private final AtomicLong topologyVersion = new AtomicLong();
+
+    // 拓扑最后一次变化的时间
+    private volatile long lastChangeTime = System.currentTimeMillis();
+
+    // 最近一次发布的快照，版本可能落后于 topologyVersion，读取时通过 current() 获取
+    private volatile GraphSnapshot snapshot;
+
+    // 最近一次计算出的路由表，读取时不需要加锁
+    private volatile RoutingTable routingTable;
+
+    private static final AtomicReferenceFieldUpdater<Graph, RoutingTable> ROUTING_TABLE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Graph.class, RoutingTable.class, "routingTable");
+
+    // 最近一次编译出的转发表，读取时不需要加锁
+    private volatile ForwardingTable forwardingTable;
+
+    private static final AtomicReferenceFieldUpdater<Graph, ForwardingTable> FORWARDING_TABLE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Graph.class, ForwardingTable.class, "forwardingTable");
 
     private final byte[] nodeIdsLock = new byte[0];
     private final byte[] pathsLock = new byte[0];
 
     public static final int INF = -1;
 
+    // AUTO 模式下，结点数不少于这个值且边的密度低于 SPARSE_DENSITY 时改用邻接表
+    private static final int SPARSE_MIN_NODES = 64;
+    private static final double SPARSE_DENSITY = 0.1;
+
+    // AUTO 模式下，结点数少于这个值或边的密度高于 DENSE_DENSITY 时改回矩阵。两组阈值之间留有余量，防止来回切换
+    private static final int DENSE_MAX_NODES = 32;
+    private static final double DENSE_DENSITY = 0.25;
+
+    // 已删除的槽位超过所有槽位的这个比例时，在后台回收
+    private static final double COMPACTION_DEAD_FRACTION = 0.25;
+
     /**
      * 构造函数。
      *
@@ -30,15 +78,81 @@ public class Graph
      */
     public Graph(String nodeId)
     {
-        nodeIds = new ArrayList<>();
+        this(nodeId, GraphStorageMode.AUTO);
+    }
+
+    /**
+     * @param nodeId      当前结点的 nodeId。
+     * @param storageMode 图的存储方式。
+     */
+    public Graph(String nodeId, GraphStorageMode storageMode)
+    {
+        this.storageMode = storageMode;
+        nodeIds = new NodeIdIndex();
         nodeIds.add(nodeId);
-        paths = new double[nodeIds.size()][nodeIds.size()];
+        storage = createStorage(storageMode == GraphStorageMode.SPARSE ? GraphStorageMode.SPARSE : GraphStorageMode.DENSE);
+        storage.ensureSlots(nodeIds.getSlotCount());
+        publish();
     }
 
     public Graph(List<String> nodeIds, double[][] paths)
     {
-        this.nodeIds = new ArrayList<>(nodeIds);
-        this.paths = paths.clone();
+        this.storageMode = GraphStorageMode.AUTO;
+        this.nodeIds = new NodeIdIndex(nodeIds);
+        storage = createStorage(GraphStorageMode.DENSE);
+        storage.ensureSlots(this.nodeIds.getSlotCount());
+        for (int row = 0; row < paths.length; row++)
+        {
+            for (int col = 0; col < row; col++)
+            {
+                storage.setWeight(row, col, paths[row][col]);
+            }
+        }
+        switchStorageIfNeeded();
+        publish();
+    }
+
+    /**
+     * 开启增量最短路径计算。此后以 nodeId 为起点的最短路径树会随每次路径变化局部更新，而不是每次输出时从头计算。
+     */
+    public void enableIncrementalShortestPaths(String nodeId)
+    {
+        synchronized (nodeIdsLock)
+        {
+            synchronized (pathsLock)
+            {
+                shortestPathTree = new IncrementalShortestPathTree(liveAdjacency, getNodeIndex(nodeId));
+                publish();
+            }
+        }
+    }
+
+    /**
+     * 获取当前拓扑版本的快照。快照不可修改，可以在不加锁的情况下任意读取。
+     */
+    public GraphSnapshot getSnapshot()
+    {
+        return current();
+    }
+
+    /**
+     * 返回当前拓扑版本的快照。已发布的快照没有落后时不需要加锁，否则持有图的锁发布一个新快照，同一个版本只创建一次。
+     */
+    private GraphSnapshot current()
+    {
+        final GraphSnapshot published = snapshot;
+        if (published.getVersion() == topologyVersion.get())
+        {
+            return published;
+        }
+        synchronized (nodeIdsLock)
+        {
+            synchronized (pathsLock)
+            {
+                publishIfChanged();
+                return snapshot;
+            }
+        }
     }
 
     /**
@@ -46,7 +160,7 @@ public class Graph
      */
     public boolean hasNode(String nodeId)
     {
-        return nodeIds.contains(nodeId);
+        return current().hasNode(nodeId);
     }
 
     /**
@@ -54,9 +168,7 @@ public class Graph
      */
     public double getPathLength(String startNodeId, String endNodeId)
     {
-        int startNodeIndex = getNodeIndex(startNodeId);
-        int endNodeIndex = getNodeIndex(endNodeId);
-        return paths[startNodeIndex][endNodeIndex];
+        return current().getPathLength(startNodeId, endNodeId);
     }
 
     /**
@@ -64,168 +176,139 @@ public class Graph
      */
     public List<String> getNodeIds()
     {
-        return new ArrayList<>(nodeIds);
+        return current().getNodeIds();
+    }
+
+    /**
+     * 返回图当前使用的存储方式（DENSE 或 SPARSE）。
+     */
+    public GraphStorageMode getCurrentStorageMode()
+    {
+        synchronized (pathsLock)
+        {
+            return storage.getMode();
+        }
     }
 
     /**
-     * 把图的数组矩阵转换为 Path 对象列表。
+     * 把图的路径数据转换为 Path 对象列表，列表不可修改。
      * 项目当中出现的所有 Path 对象都是自定义的路径对象，不是标准库的 Path 对象。
      */
     public List<Path> getPathList()
+    {
+        return current().getPathList();
+    }
+
+    /**
+     * 根据当前的图数据发布一个新快照。
+     */
+    private void publish()
     {
         synchronized (nodeIdsLock)
         {
             synchronized (pathsLock)
             {
-                final List<Path> pathList = new ArrayList<>();
-                for (int row = 0; row < nodeIds.size(); row++)
+                int treeSource = -1;
+                int[] treePrevNode = null;
+                double[] treeDistances = null;
+                if (shortestPathTree != null)
                 {
-                    for (int col = 0; col < nodeIds.size(); col++)
-                    {
-                        // 自己到自己的不算，只发送一个方向的，正无穷的不算
-                        if (row > col && paths[row][col] != INF)
-                        {
-                            pathList.add(new Path(nodeIds.get(row), nodeIds.get(col), paths[row][col]));
-                        }
-                    }
+                    final Pair<int[], double[]> tree = shortestPathTree.snapshot();
+                    treeSource = shortestPathTree.getSource();
+                    treePrevNode = tree.getFirst();
+                    treeDistances = tree.getSecond();
                 }
-                return pathList;
+                snapshot = new GraphSnapshot(topologyVersion.get(), nodeIds.toSlotArray(), CompactAdjacency.from(liveAdjacency), treeSource, treePrevNode, treeDistances);
             }
         }
     }
 
     /**
-     * 给结点的名称，返回Pair(上一结点编号数组, 最短长度数组)。
-     * 上一结点编号数组：下标 i 存储的数据 j 代表想要到达 i 号结点，需要先到达 j 号结点。nodeIndex 号结点的上一个结点编号等于 nodeIndex。
-     * 最短长度数组：下标 i 存储的数据 j 代表从 nodeIndex 号结点到 i 号结点的最短长度是 j。
-     *
-     * @param nodeIndex 想要查找到各结点最短路径的起始结点编号
+     * 已发布的快照落后于当前版本时发布新快照。调用时需要持有图的锁。
      */
-    private Pair<int[], double[]> Dijkstra(int nodeIndex)
+    private void publishIfChanged()
+    {
+        if (snapshot.getVersion() != topologyVersion.get())
+        {
+            publish();
+        }
+    }
+
+    /**
+     * 仅增加一个新结点。
+     */
+    public void addNode(String nodeId)
     {
         synchronized (nodeIdsLock)
         {
             synchronized (pathsLock)
             {
-                HashSet<Integer> processedNodes = new HashSet<>();// 已经找到最短路径的结点号集合
-                int[] prevNode = new int[nodeIds.size()];// 每个结点最短路径的前一个结点号
-                double[] currentShortestPathLengthArray = new double[nodeIds.size()];// 从 nodeId 到各个结点的目前最短长度
-                int currentShortestPathIndex = 0;// 每一轮查找后最短路径的编号
-                int lastProcessNodeIndex = nodeIndex;// 最后一个找到的距离最短的结点
-
-                // 给距离数组赋初值
-                for (int i = 0; i < currentShortestPathLengthArray.length; i++)
-                {
-                    // 到自己距离是0
-                    if (i == nodeIndex)
-                    {
-                        currentShortestPathLengthArray[i] = 0;
-                    }
-                    // 到其他的都设为INF
-                    else
-                    {
-                        currentShortestPathLengthArray[i] = INF;
-                    }
-                }
-                // 起始结点算作处理过的
-                processedNodes.add(nodeIndex);
-
-                // 当已找到最短路径集合还没有包含所有结点的时候，继续循环
-                while (processedNodes.size() != nodeIds.size() && currentShortestPathIndex != -1)
-                {
-                    // 从lastProcessNodeIndex出发比较新路径是否比老路径更短
-                    for (int i = 0; i < nodeIds.size(); i++)
-                    {
-                        // 新路径比老路径更短，且这个距离不是INF，且这个结点不包含在已处理结点集合中，则更新路径长度与上一结点编号
-                        if ((paths[lastProcessNodeIndex][i] + currentShortestPathLengthArray[lastProcessNodeIndex] < currentShortestPathLengthArray[i] || currentShortestPathLengthArray[i] == INF) && paths[lastProcessNodeIndex][i] != INF && !processedNodes.contains(i))
-                        {
-                            currentShortestPathLengthArray[i] = paths[lastProcessNodeIndex][i] + currentShortestPathLengthArray[lastProcessNodeIndex];
-                            prevNode[i] = lastProcessNodeIndex;
-                        }
-                    }
-                    // 在这一轮循环结束之后查找当前最短路径
-                    currentShortestPathIndex = findShortestPath(currentShortestPathLengthArray, processedNodes);
-
-                    // 如果找不到最短路径，那么出现孤岛，不作处理返回
-                    if (currentShortestPathIndex != -1)
-                    {
-                        // 找到后，将其连接的结点添加到已处理集合中
-                        processedNodes.add(currentShortestPathIndex);
-                        // 修改lastProcessNodeIndex为这个结点
-                        lastProcessNodeIndex = currentShortestPathIndex;
-                    }
-                }
-                return new Pair<>(prevNode, currentShortestPathLengthArray);
+                addNodeIfAbsent(nodeId);
             }
         }
     }
 
     /**
-     * 找到数组中最小路径的下标。配合最短路径算法。
-     *
-     * @param currentShortestPathLength 当前到所有结点最短长度。
-     * @param processedNodes            已经确定最短长度的结点集合。
+     * 结点不存在时增加这个结点，返回结点的槽位编号。
      */
-    private int findShortestPath(double[] currentShortestPathLength, HashSet<Integer> processedNodes)
+    private int addNodeIfAbsent(String nodeId)
     {
         synchronized (nodeIdsLock)
         {
             synchronized (pathsLock)
             {
-                int minIndex = -1;
-                double min = Integer.MAX_VALUE;
-                for (int i = 0; i < currentShortestPathLength.length; i++)
+                int nodeIndex = nodeIds.indexOf(nodeId);
+                if (nodeIndex == -1)
                 {
-                    if (currentShortestPathLength[i] < min && currentShortestPathLength[i] != INF && !processedNodes.contains(i))
+                    nodeIndex = nodeIds.add(nodeId);
+                    storage.ensureSlots(nodeIds.getSlotCount());
+                    if (shortestPathTree != null)
                     {
-                        min = currentShortestPathLength[i];
-                        minIndex = i;
+                        shortestPathTree.nodeAdded();
                     }
+                    topologyVersion.incrementAndGet();
+                    lastChangeTime = System.currentTimeMillis();
                 }
-                return minIndex;
+                return nodeIndex;
             }
         }
     }
 
     /**
-     * 仅增加一个新结点。
+     * 删除结点及其路径。
+     * 结点只被标记为已删除，之后的最短路径计算与路径列表都会跳过它；与它相连的路径在已删除结点足够多时由后台一起清理。
+     * 清理后槽位会留给之后加入的结点，其他结点的编号不变。
      */
-    public void addNode(String nodeId)
+    public void removeNode(String nodeId)
     {
         synchronized (nodeIdsLock)
         {
             synchronized (pathsLock)
             {
-                if (!nodeIds.contains(nodeId))
-                {
-                    nodeIds.add(nodeId);
-                    expandPaths();
-                }
+                applyRemoveNode(nodeId);
             }
         }
     }
 
     /**
-     * 删除结点及其路径。
+     * 作为一批修改删除多个结点。
      */
-    public void removeNode(String nodeId)
+    public void removeNodes(Collection<String> nodeIdsToRemove)
     {
         synchronized (nodeIdsLock)
         {
             synchronized (pathsLock)
             {
-                int nodeIndex = getNodeIndex(nodeId);
-                if (nodeIndex != -1)
+                for (String nodeId : nodeIdsToRemove)
                 {
-                    nodeIds.remove(nodeIndex);
-                    shrinkPaths(nodeIndex);
+                    applyRemoveNode(nodeId);
                 }
             }
         }
     }
 
     /**
-     * 根据传入的 Path 对象信息更新 paths 数组
+     * 根据传入的 Path 对象信息更新路径数据
      */
     public void updatePath(Path path)
     {
@@ -233,29 +316,13 @@ public class Graph
         {
             synchronized (pathsLock)
             {
-                int startNodeIndex = 0;
-                int endNodeIndex = 0;
-                // 如果起始结点或结束结点不在图里，就把它添加到图里
-                if (!nodeIds.contains(path.getStartNodeId()))
-                {
-                    addNode(path.getStartNodeId());
-                }
-
-                if (!nodeIds.contains(path.getEndNodeId()))
-                {
-                    addNode(path.getEndNodeId());
-                }
-
-                startNodeIndex = getNodeIndex(path.getStartNodeId());
-                endNodeIndex = getNodeIndex(path.getEndNodeId());
-                this.paths[startNodeIndex][endNodeIndex] = path.getPathLength();
-                this.paths[endNodeIndex][startNodeIndex] = path.getPathLength();
+                applyPath(path);
             }
         }
     }
 
     /**
-     * 根据传入的 Path 对象信息更新 paths 数组
+     * 根据传入的 Path 对象信息更新路径数据。所有路径作为一批修改。
      */
     public void updatePaths(List<Path> paths)
     {
@@ -265,190 +332,360 @@ public class Graph
             {
                 for (Path path : paths)
                 {
-                    updatePath(path);
+                    applyPath(path);
                 }
             }
         }
     }
 
     /**
-     * 将 paths 数组扩大一行一列，并把原来的数据复制出来。
+     * 把结点标记为已删除，不发布快照。调用时需要持有图的锁。
      */
-    private void expandPaths()
+    private void applyRemoveNode(String nodeId)
     {
-        synchronized (nodeIdsLock)
+        int nodeIndex = getNodeIndex(nodeId);
+        if (nodeIndex != -1)
         {
-            synchronized (pathsLock)
+            if (shortestPathTree != null)
             {
-                final int lastLength = paths.length;
-                final double[][] newPaths = new double[lastLength + 1][lastLength + 1];
+                shortestPathTree.nodeRemoving(nodeIndex);
+            }
+            nodeIds.remove(nodeIndex);
+            topologyVersion.incrementAndGet();
+            lastChangeTime = System.currentTimeMillis();
+            scheduleCompactionIfNeeded();
+        }
+    }
 
-                // 先把整个矩阵都设置为 INF 值，否则会出现距离 0
-                for (int i = 0; i < lastLength + 1; i++)
-                {
-                    for (int j = 0; j < lastLength + 1; j++)
-                    {
-                        newPaths[i][j] = INF;
-                    }
-                }
+    /**
+     * 已删除的槽位超过一定比例时，安排后台线程回收它们。调用时需要持有图的锁。
+     */
+    private void scheduleCompactionIfNeeded()
+    {
+        if (nodeIds.getDeadSlotCount() > nodeIds.getSlotCount() * COMPACTION_DEAD_FRACTION && compactionScheduled.compareAndSet(false, true))
+        {
+            ForkJoinPool.commonPool().execute(this::compact);
+        }
+    }
 
-                for (int row = 0; row < lastLength; row++)
+    /**
+     * 清理与已删除结点相连的路径，并回收它们的槽位。
+     * 图的逻辑内容没有变化，所以不修改版本号，也不需要发布新快照。
+     */
+    private void compact()
+    {
+        synchronized (nodeIdsLock)
+        {
+            synchronized (pathsLock)
+            {
+                compactionScheduled.set(false);
+                for (int slot : nodeIds.getDeadSlots())
                 {
-                    for (int col = 0; col < lastLength; col++)
-                    {
-                        newPaths[row][col] = paths[row][col];
-                    }
+                    storage.clearNode(slot);
                 }
-                this.paths = newPaths;
+                nodeIds.releaseDeadSlots();
+                switchStorageIfNeeded();
             }
         }
     }
 
     /**
-     * 将 paths 数组缩小一行一列，并把剩余数据复制出来。
-     *
-     * @param nodeIndex 要被删除的行列号。
+     * 修改一条路径，不发布快照。调用时需要持有图的锁。
      */
-    private void shrinkPaths(int nodeIndex)
+    private void applyPath(Path path)
     {
-        synchronized (nodeIdsLock)
+        // 如果起始结点或结束结点不在图里，就把它添加到图里
+        final int startNodeIndex = addNodeIfAbsent(path.getStartNodeId());
+        final int endNodeIndex = addNodeIfAbsent(path.getEndNodeId());
+        final double oldLength = storage.getWeight(startNodeIndex, endNodeIndex);
+        // 长度没有变化时不修改版本号，以免路由表缓存失效
+        if (oldLength == path.getPathLength())
         {
-            synchronized (pathsLock)
+            return;
+        }
+        storage.setWeight(startNodeIndex, endNodeIndex, path.getPathLength());
+        if (shortestPathTree != null)
+        {
+            shortestPathTree.edgeChanged(startNodeIndex, endNodeIndex, oldLength, path.getPathLength());
+        }
+        topologyVersion.incrementAndGet();
+        lastChangeTime = System.currentTimeMillis();
+        switchStorageIfNeeded();
+    }
+
+    /**
+     * 创建指定方式的空存储。
+     */
+    private static GraphStorage createStorage(GraphStorageMode mode)
+    {
+        return mode == GraphStorageMode.SPARSE ? new SparseAdjacencyStorage() : new DenseMatrixStorage();
+    }
+
+    /**
+     * AUTO 模式下根据结点数量与边的密度决定是否更换存储方式，需要时把所有路径复制到新的存储中。
+     * 槽位编号不变，因此最短路径树等依赖编号的数据不受影响。
+     */
+    private void switchStorageIfNeeded()
+    {
+        synchronized (pathsLock)
+        {
+            if (storageMode != GraphStorageMode.AUTO)
+            {
+                return;
+            }
+
+            final int nodeCount = nodeIds.size();
+            final double density = nodeCount < 2 ? 1 : 2.0 * storage.getEdgeCount() / ((double) nodeCount * (nodeCount - 1));
+            GraphStorageMode target = storage.getMode();
+            if (target == GraphStorageMode.DENSE && nodeCount >= SPARSE_MIN_NODES && density < SPARSE_DENSITY)
             {
-                final int lastLength = paths.length;
-                final double[][] newPaths = new double[lastLength - 1][lastLength - 1];
-                int newRow = 0;
-                int newCol = 0;
-                for (int row = 0; row < lastLength; row++)
+                target = GraphStorageMode.SPARSE;
+            }
+            else if (target == GraphStorageMode.SPARSE && (nodeCount < DENSE_MAX_NODES || density > DENSE_DENSITY))
+            {
+                target = GraphStorageMode.DENSE;
+            }
+
+            if (target != storage.getMode())
+            {
+                final GraphStorage newStorage = createStorage(target);
+                final int slotCount = storage.getNodeCount();
+                final int[] targets = new int[slotCount];
+                final double[] weights = new double[slotCount];
+                newStorage.ensureSlots(slotCount);
+                for (int node = 0; node < slotCount; node++)
                 {
-                    // nodeIndex 那一行不进行复制
-                    for (int col = 0; col < lastLength && row != nodeIndex; col++)
+                    final int degree = storage.getNeighbors(node, targets, weights);
+                    for (int i = 0; i < degree; i++)
                     {
-                        if (col != nodeIndex)
+                        if (targets[i] < node)
                         {
-                            // 如果当前行小于 nodeIndex，则原位复制
-                            if (row < nodeIndex)
-                            {
-                                newRow = row;
-                            }
-                            // 如果当前行大于 nodeIndex，则放到原来的上一行
-                            else
-                            {
-                                newRow = row - 1;
-                            }
-
-                            // 如果当前列小于 nodeIndex，则原位复制
-                            if (col < nodeIndex)
-                            {
-                                newCol = col;
-                            }
-                            // 如果当前列大于 nodeIndex，则放到原来的上一列
-                            else
-                            {
-                                newCol = col - 1;
-                            }
-                            newPaths[newRow][newCol] = paths[row][col];
+                            newStorage.setWeight(node, targets[i], weights[i]);
                         }
                     }
                 }
-                paths = newPaths;
+                storage = newStorage;
             }
         }
     }
 
     /**
-     * 输出最短路径信息。如果检测到孤岛会进行删除。
+     * 获取以 nodeId 为起点的路由表。
+     * 路由表由当前版本的快照计算，快照没有变化时直接返回缓存的路由表，整个过程都不需要加锁。
+     * 图中没有这个结点时返回 null。
      */
-    public void printShortestPaths(String nodeId)
+    public RoutingTable getRoutingTable(String nodeId)
     {
-        synchronized (nodeIdsLock)
+        final GraphSnapshot current = current();
+        final RoutingTable cached = routingTable;
+        if (cached != null && cached.getVersion() == current.getVersion() && cached.getSourceNodeId().equals(nodeId))
         {
-            synchronized (pathsLock)
+            return cached;
+        }
+
+        final int nodeIndex = current.indexOf(nodeId);
+        if (nodeIndex == -1)
+        {
+            return null;
+        }
+
+        final Pair<int[], double[]> info = getShortestPaths(current, nodeIndex);
+        final RoutingTable table = RoutingTable.fromShortestPaths(current.getVersion(), current.getSlotNodeIds(), nodeIndex, info.getFirst(), info.getSecond());
+
+        // 只有新表的版本不比已发布的旧时才发布，防止较慢的计算覆盖较新的结果
+        while (true)
+        {
+            final RoutingTable published = routingTable;
+            if (published != null && published.getVersion() > table.getVersion() && published.getSourceNodeId().equals(nodeId))
+            {
+                return published;
+            }
+            if (ROUTING_TABLE_UPDATER.compareAndSet(this, published, table))
             {
-                Calendar calendar = Calendar.getInstance();
-                System.out.printf("%02d:%02d:%02d\n", calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+                return table;
+            }
+        }
+    }
 
-                if (nodeIds.contains(nodeId))
-                {
-                    final int nodeIndex = getNodeIndex(nodeId);
-                    final Pair<int[], double[]> info = Dijkstra(nodeIndex);
+    /**
+     * 获取以 nodeId 为起点的转发表。neighborPorts 为本结点所有邻居的名称到端口的映射，编译后不应再修改。
+     * 转发表与路由表来自同一次最短路径计算，快照与 neighborPorts 都没有变化时直接返回缓存的转发表，整个过程都不需要加锁。
+     * 图中没有这个结点时返回 null。
+     */
+    public ForwardingTable getForwardingTable(String nodeId, Map<String, Integer> neighborPorts)
+    {
+        final GraphSnapshot current = current();
+        final ForwardingTable cached = forwardingTable;
+        if (cached != null && cached.getVersion() == current.getVersion() && cached.getNeighborPorts() == neighborPorts && cached.getSourceNodeId().equals(nodeId))
+        {
+            return cached;
+        }
 
-                    // 上一结点编号数组：下标 i 存储的数据 j 代表想要到达 i 号结点，需要先到达 j 号结点。nodeIndex 号结点的上一个结点编号等于 nodeIndex。
-                    final int[] prevNodeArray = info.getFirst();
+        final int nodeIndex = current.indexOf(nodeId);
+        if (nodeIndex == -1)
+        {
+            return null;
+        }
 
-                    // 最短长度数组：下标 i 存储的数据 j 代表从 nodeIndex 号结点到 i 号结点的最短长度是 j。
-                    final double[] shortestPathLengthArray = info.getSecond();
+        final Pair<int[], double[]> info = getShortestPaths(current, nodeIndex);
+        final ForwardingTable table = ForwardingTable.compile(current, nodeIndex, info.getFirst(), info.getSecond(), neighborPorts);
 
-                    // 每个结点的路径字符串
-                    StringBuilder[] pathStrs = new StringBuilder[nodeIds.size()];
+        // 与路由表相同，不让较慢的编译覆盖较新的结果
+        while (true)
+        {
+            final ForwardingTable published = forwardingTable;
+            if (published != null && published.getVersion() > table.getVersion() && published.getSourceNodeId().equals(nodeId))
+            {
+                return published;
+            }
+            if (FORWARDING_TABLE_UPDATER.compareAndSet(this, published, table))
+            {
+                return table;
+            }
+        }
+    }
 
-                    for (int i = 0; i < pathStrs.length; i++)
-                    {
-                        pathStrs[i] = new StringBuilder();
-                    }
+    /**
+     * 在快照上计算以 nodeIndex 为起点的最短路径。起点就是最短路径树的根时直接使用快照中的结果，不需要重新计算。
+     */
+    private static Pair<int[], double[]> getShortestPaths(GraphSnapshot current, int nodeIndex)
+    {
+        if (current.getTreeSource() == nodeIndex)
+        {
+            return new Pair<>(current.getTreePrevNode(), current.getTreeDistances());
+        }
+        final CompactAdjacency adjacencyView = current.getAdjacency();
+        return new ShortestPathEngine(adjacencyView.getNodeCount()).run(adjacencyView, nodeIndex);
+    }
 
-                    int currentNodeIndex = -1;
-                    for (int i = 0; i < nodeIds.size(); i++)
-                    {
-                        // 孤岛结点不输出
-                        if (shortestPathLengthArray[i] != Graph.INF)
-                        {
-                            currentNodeIndex = i;
-                            while (currentNodeIndex != nodeIndex)
-                            {
-                                pathStrs[i].insert(0, nodeIds.get(currentNodeIndex));
-                                currentNodeIndex = prevNodeArray[currentNodeIndex];
-                            }
-
-                            // 添加上出发结点
-                            pathStrs[i].insert(0, nodeId);
-                            System.out.printf("least-cost path to node %s: %-20s and the cost is %-6.2f\n", nodeIds.get(i), pathStrs[i].toString(), shortestPathLengthArray[i]);
-                        }
-                    }
-                    System.out.println();
+    /**
+     * 在当前版本的快照上计算所有结点之间的最短路径，各起点在公共 ForkJoinPool 中并行计算。
+     */
+    public AllPairsResult computeAllPairs()
+    {
+        return AllPairsShortestPaths.compute(current(), ForkJoinPool.commonPool());
+    }
 
+    /**
+     * 获取当前的拓扑版本。图的结点或路径每发生一次变化，版本号加一。不需要创建快照。
+     */
+    public long getTopologyVersion()
+    {
+        return topologyVersion.get();
+    }
 
-                    // 输出完成后，开始删除孤岛结点
-                    Set<String> nodeIdsToRemove = new HashSet<>();
+    /**
+     * 拓扑最后一次变化的时间。拓扑不再变化说明路由已经收敛。
+     */
+    public long getLastChangeTime()
+    {
+        return lastChangeTime;
+    }
 
-                    // 这个地方，之所以要分开查找与删除是因为 currentShortestPathLength 里的下标和 nodeIds 的下标是对应的。如果边找边删刚删完前面的就找不到后面对应结点的正确下标了
-                    for (int i = 0; i < shortestPathLengthArray.length; i++)
-                    {
-                        if (shortestPathLengthArray[i] == INF)
-                        {
-                            nodeIdsToRemove.add(nodeIds.get(i));
-                        }
-                    }
+    /**
+     * 输出最短路径信息。如果检测到孤岛会进行删除。
+     */
+    public void printShortestPaths(String nodeId)
+    {
+        Calendar calendar = Calendar.getInstance();
+        System.out.printf("%02d:%02d:%02d\n", calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
 
-                    for (String n : nodeIdsToRemove)
-                    {
-                        removeNode(n);
-                    }
+        final RoutingTable table = getRoutingTable(nodeId);
+        if (table != null)
+        {
+            for (RoutingTable.Route route : table.getRoutes())
+            {
+                System.out.printf("least-cost path to node %s: %-20s and the cost is %-6.2f\n", route.getDestinationNodeId(), route.getPathString(), route.getCost());
+            }
+            System.out.println();
+
+            // 输出完成后，开始删除孤岛结点
+            removeUnreachableNodes(table);
+        }
+    }
+
+    /**
+     * 删除从 nodeId 出发不可到达的孤岛结点。
+     */
+    public void pruneUnreachableNodes(String nodeId)
+    {
+        final RoutingTable table = getRoutingTable(nodeId);
+        if (table != null)
+        {
+            removeUnreachableNodes(table);
+        }
+    }
+
+    /**
+     * 删除路由表中的孤岛结点。只有图在计算路由表之后没有变化时才删除，否则孤岛可能已经重新连上，留到下一次输出时再判断。
+     */
+    private void removeUnreachableNodes(RoutingTable table)
+    {
+        if (table.getUnreachableNodeIds().isEmpty())
+        {
+            return;
+        }
+        synchronized (nodeIdsLock)
+        {
+            synchronized (pathsLock)
+            {
+                if (topologyVersion.get() == table.getVersion())
+                {
+                    removeNodes(table.getUnreachableNodeIds());
                 }
             }
         }
     }
 
     /**
-     * 找到这个结点 Id 在 nodeIds 中的下标。
+     * 找到这个结点 Id 的槽位编号，不存在时返回 -1。
      */
     private int getNodeIndex(String nodeId)
     {
         synchronized (nodeIdsLock)
         {
-            synchronized (pathsLock)
+            return nodeIds.indexOf(nodeId);
+        }
+    }
+
+    /**
+     * 总是读取当前 storage 的邻居数据来源，已删除但还没有清理的结点及与它们相连的路径都会被跳过。
+     * 存储方式切换后不需要重新创建。调用时需要持有图的锁。
+     */
+    private class LiveAdjacencySource implements AdjacencySource
+    {
+        public int getNodeCount()
+        {
+            return storage.getNodeCount();
+        }
+
+        public double getWeight(int from, int to)
+        {
+            if (nodeIds.get(from) == null || nodeIds.get(to) == null)
+            {
+                return INF;
+            }
+            return storage.getWeight(from, to);
+        }
+
+        public int getNeighbors(int node, int[] targets, double[] weights)
+        {
+            if (nodeIds.get(node) == null)
             {
-                int index = -1;
-                for (int i = 0; i < nodeIds.size(); i++)
+                return 0;
+            }
+            final int degree = storage.getNeighbors(node, targets, weights);
+            int count = 0;
+            for (int i = 0; i < degree; i++)
+            {
+                if (nodeIds.get(targets[i]) != null)
                 {
-                    if (nodeIds.get(i).equals(nodeId))
-                    {
-                        index = i;
-                        break;
-                    }
+                    targets[count] = targets[i];
+                    weights[count] = weights[i];
+                    count++;
                 }
-                return index;
             }
+            return count;
         }
     }
-}
\ No newline at end of file
+}
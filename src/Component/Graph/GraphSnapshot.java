@@ -0,0 +1,171 @@
+package Component.Graph;
+
+import java.util.*;
+
+/**
+ * 图在某一个拓扑版本下的不可变快照。
+ * 写入者修改图时不创建快照，读取者（发送器、输出、路由查询）第一次读取某个版本时才创建，连续的多次修改只创建一次。
+ * 快照没有落后时读取者只读取已发布的快照，不需要加锁，也不会被最短路径计算阻塞。
+ */
+public class GraphSnapshot
+{
+    private final long version;
+
+    // 以槽位为下标的结点名称，空槽位为 null
+    private final String[] nodeIds;
+
+    // 名称到槽位
+    private final Map<String, Integer> indexes;
+
+    private final CompactAdjacency adjacency;
+
+    // 发布时增量最短路径树的内容，没有开启增量计算时 treeSource 为 -1
+    private final int treeSource;
+    private final int[] treePrevNode;
+    private final double[] treeDistances;
+
+    // 路径列表，第一次使用时创建
+    private volatile List<Path> pathList;
+
+    GraphSnapshot(long version, String[] nodeIds, CompactAdjacency adjacency, int treeSource, int[] treePrevNode, double[] treeDistances)
+    {
+        this.version = version;
+        this.nodeIds = nodeIds;
+        this.adjacency = adjacency;
+        this.treeSource = treeSource;
+        this.treePrevNode = treePrevNode;
+        this.treeDistances = treeDistances;
+
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < nodeIds.length; i++)
+        {
+            if (nodeIds[i] != null)
+            {
+                map.put(nodeIds[i], i);
+            }
+        }
+        this.indexes = map;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public boolean hasNode(String nodeId)
+    {
+        return indexes.containsKey(nodeId);
+    }
+
+    /**
+     * 返回结点名称对应的槽位，不存在时返回 -1。
+     */
+    public int indexOf(String nodeId)
+    {
+        final Integer index = indexes.get(nodeId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 返回槽位上的结点名称，空槽位返回 null。
+     */
+    public String getNodeId(int index)
+    {
+        return nodeIds[index];
+    }
+
+    /**
+     * 槽位编号的上限，包括空槽位。
+     */
+    public int getSlotCount()
+    {
+        return nodeIds.length;
+    }
+
+    /**
+     * 返回所有结点名称的列表。
+     */
+    public List<String> getNodeIds()
+    {
+        final List<String> list = new ArrayList<>(indexes.size());
+        for (String nodeId : nodeIds)
+        {
+            if (nodeId != null)
+            {
+                list.add(nodeId);
+            }
+        }
+        return list;
+    }
+
+    public CompactAdjacency getAdjacency()
+    {
+        return adjacency;
+    }
+
+    /**
+     * 获取两个结点之间的路径长度，不直接相通时为 Graph.INF。
+     */
+    public double getPathLength(String startNodeId, String endNodeId)
+    {
+        final int start = indexOf(startNodeId);
+        final int end = indexOf(endNodeId);
+        if (start != -1 && end != -1)
+        {
+            for (int edge = adjacency.edgeBegin(start); edge < adjacency.edgeEnd(start); edge++)
+            {
+                if (adjacency.edgeTarget(edge) == end)
+                {
+                    return adjacency.edgeWeight(edge);
+                }
+            }
+        }
+        return Graph.INF;
+    }
+
+    /**
+     * 把快照中的路径转换为不可修改的 Path 对象列表，每条路径只出现一个方向。
+     */
+    public List<Path> getPathList()
+    {
+        List<Path> list = pathList;
+        if (list == null)
+        {
+            list = new ArrayList<>();
+            for (int row = 0; row < adjacency.getNodeCount(); row++)
+            {
+                for (int edge = adjacency.edgeBegin(row); edge < adjacency.edgeEnd(row); edge++)
+                {
+                    final int col = adjacency.edgeTarget(edge);
+                    if (row > col)
+                    {
+                        list.add(new Path(nodeIds[row], nodeIds[col], adjacency.edgeWeight(edge)));
+                    }
+                }
+            }
+            list = Collections.unmodifiableList(list);
+            pathList = list;
+        }
+        return list;
+    }
+
+    String[] getSlotNodeIds()
+    {
+        return nodeIds;
+    }
+
+    int getTreeSource()
+    {
+        return treeSource;
+    }
+
+    int[] getTreePrevNode()
+    {
+        return treePrevNode;
+    }
+
+    double[] getTreeDistances()
+    {
+        return treeDistances;
+    }
+}
@@ -0,0 +1,31 @@
+package Component.Graph;
+
+/**
+ * 图的路径存储后端。结点用槽位编号表示，槽位由 NodeIdIndex 分配，删除的槽位会被之后加入的结点重新使用。
+ * 存储的都是无向边，设置 (u, v) 的同时也设置 (v, u)。
+ * 实现类不是线程安全的，由 Graph 的锁保护。
+ */
+interface GraphStorage extends AdjacencySource
+{
+    /**
+     * 保证槽位 0 到 slotCount - 1 都可以使用。容量不够时按倍数扩大，新槽位没有任何路径。
+     */
+    void ensureSlots(int slotCount);
+
+    /**
+     * 设置两个结点之间的路径长度，Graph.INF 代表删除这条路径。
+     */
+    void setWeight(int from, int to, double weight);
+
+    /**
+     * 删除与某个结点相连的所有路径，槽位之后可以被重新使用。
+     */
+    void clearNode(int node);
+
+    /**
+     * 当前无向边的数量。
+     */
+    int getEdgeCount();
+
+    GraphStorageMode getMode();
+}
@@ -0,0 +1,16 @@
+package Component.Graph;
+
+/**
+ * 图的存储方式。
+ */
+public enum GraphStorageMode
+{
+    // 邻接矩阵，适合结点很少或者边很密的图
+    DENSE,
+
+    // 邻接表，适合结点多而每个结点邻居少的图
+    SPARSE,
+
+    // 根据结点数量和边的密度自动在两者之间切换
+    AUTO
+}
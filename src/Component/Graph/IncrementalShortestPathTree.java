@@ -0,0 +1,260 @@
+package Component.Graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 动态维护的单源最短路径树（Ramalingam–Reps 算法）。
+ * 一条边的长度变化后，只重新计算距离或上一结点真正受影响的结点：
+ * 长度变小时从变短的一端向外松弛；长度变大或被删除时，只有这条边是树边才需要处理，且只重新计算下游子树。
+ * 所有方法都需要在持有图的锁时调用。
+ */
+class IncrementalShortestPathTree
+{
+    private final AdjacencySource graph;
+
+    // 起始结点编号
+    private int source;
+
+    // 当前结点数量
+    private int nodeCount;
+
+    // 从 source 到各个结点的最短长度，不可到达为正无穷
+    private double[] distances;
+
+    // 每个结点最短路径的前一个结点号，source 为自己，不可到达为 -1
+    private int[] prevNode;
+
+    private IndexedMinHeap heap;
+
+    // 受影响的子树结点
+    private final BitSet affected;
+    private int[] affectedNodes;
+
+    // 读取邻居时使用的缓冲区
+    private int[] neighborTargets;
+    private double[] neighborWeights;
+
+    IncrementalShortestPathTree(AdjacencySource graph, int source)
+    {
+        this.graph = graph;
+        this.affected = new BitSet();
+        allocate(Math.max(graph.getNodeCount(), 16));
+        rebuild(source);
+    }
+
+    int getSource()
+    {
+        return source;
+    }
+
+    /**
+     * 从头计算整棵最短路径树。
+     */
+    void rebuild(int source)
+    {
+        this.source = source;
+        this.nodeCount = graph.getNodeCount();
+        ensureCapacity(nodeCount);
+        Arrays.fill(distances, 0, nodeCount, Double.POSITIVE_INFINITY);
+        Arrays.fill(prevNode, 0, nodeCount, -1);
+        heap.clear(distances.length);
+
+        distances[source] = 0;
+        prevNode[source] = source;
+        heap.insertOrDecrease(source, 0);
+        propagate(-1);
+    }
+
+    /**
+     * 图中增加了结点。新槽位暂时不可到达，重新使用的槽位在删除时已经是不可到达的。
+     */
+    void nodeAdded()
+    {
+        final int newCount = graph.getNodeCount();
+        ensureCapacity(newCount);
+        for (int i = nodeCount; i < newCount; i++)
+        {
+            distances[i] = Double.POSITIVE_INFINITY;
+            prevNode[i] = -1;
+        }
+        nodeCount = newCount;
+    }
+
+    /**
+     * 结点 index 即将从图中删除，需要在图真正删除它的路径之前调用。
+     * 以它为根的子树会绕开它重新接到树上，它自己变为不可到达，槽位之后可以被新结点使用。
+     */
+    void nodeRemoving(int index)
+    {
+        if (index == source)
+        {
+            throw new IllegalArgumentException("不能删除最短路径树的起始结点");
+        }
+        if (prevNode[index] != -1)
+        {
+            repairSubtree(index, index);
+        }
+    }
+
+    /**
+     * 边 (u, v) 的长度从 oldWeight 变为 newWeight，需要在图已经修改之后调用。Graph.INF 代表没有这条边。
+     */
+    void edgeChanged(int u, int v, double oldWeight, double newWeight)
+    {
+        if (u == v || oldWeight == newWeight)
+        {
+            return;
+        }
+
+        final boolean becameLonger = newWeight == Graph.INF || (oldWeight != Graph.INF && newWeight > oldWeight);
+        if (becameLonger)
+        {
+            // 只有树边变长才会影响最短路径
+            if (prevNode[v] == u)
+            {
+                repairSubtree(v, -1);
+            }
+            else if (prevNode[u] == v)
+            {
+                repairSubtree(u, -1);
+            }
+        }
+        else
+        {
+            heap.clear(distances.length);
+            relax(u, v, newWeight);
+            relax(v, u, newWeight);
+            propagate(-1);
+        }
+    }
+
+    /**
+     * 返回 Pair(上一结点编号数组, 最短长度数组) 的副本，格式与 ShortestPathEngine.run 相同。
+     */
+    Pair<int[], double[]> snapshot()
+    {
+        final int[] prevCopy = Arrays.copyOf(prevNode, nodeCount);
+        final double[] distanceCopy = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+        {
+            distanceCopy[i] = distances[i] == Double.POSITIVE_INFINITY ? Graph.INF : distances[i];
+        }
+        return new Pair<>(prevCopy, distanceCopy);
+    }
+
+    /**
+     * 经由 from 到达 to 更短时，更新 to 并放入堆中。
+     */
+    private void relax(int from, int to, double weight)
+    {
+        final double newDistance = distances[from] + weight;
+        if (newDistance < distances[to])
+        {
+            distances[to] = newDistance;
+            prevNode[to] = from;
+            heap.insertOrDecrease(to, newDistance);
+        }
+    }
+
+    /**
+     * 从堆中的结点开始向外松弛，直到没有结点的距离继续变短。excluded 结点不会被经过。
+     */
+    private void propagate(int excluded)
+    {
+        while (!heap.isEmpty())
+        {
+            final int current = heap.poll();
+            final int degree = graph.getNeighbors(current, neighborTargets, neighborWeights);
+            for (int i = 0; i < degree; i++)
+            {
+                if (neighborTargets[i] != excluded)
+                {
+                    relax(current, neighborTargets[i], neighborWeights[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新计算以 root 为根的子树。子树之外结点的最短路径不会变长，因此只需要让子树结点从子树外的邻居重新接入。
+     *
+     * @param excluded 不能再经过的结点（将被删除的结点），没有则为 -1。
+     */
+    private void repairSubtree(int root, int excluded)
+    {
+        // 找出子树中的所有结点。树边一定是图中的边，所以子结点一定在邻居中
+        int count = 0;
+        affectedNodes[count++] = root;
+        affected.set(root);
+        for (int head = 0; head < count; head++)
+        {
+            final int current = affectedNodes[head];
+            final int degree = graph.getNeighbors(current, neighborTargets, neighborWeights);
+            for (int i = 0; i < degree; i++)
+            {
+                final int child = neighborTargets[i];
+                if (prevNode[child] == current && child != current && !affected.get(child))
+                {
+                    affected.set(child);
+                    affectedNodes[count++] = child;
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            distances[affectedNodes[i]] = Double.POSITIVE_INFINITY;
+            prevNode[affectedNodes[i]] = -1;
+        }
+
+        // 每个子树结点先从子树外的邻居取得一个候选长度
+        heap.clear(distances.length);
+        for (int i = 0; i < count; i++)
+        {
+            final int node = affectedNodes[i];
+            if (node == excluded)
+            {
+                continue;
+            }
+            final int degree = graph.getNeighbors(node, neighborTargets, neighborWeights);
+            for (int j = 0; j < degree; j++)
+            {
+                final int neighbor = neighborTargets[j];
+                if (neighbor != excluded && !affected.get(neighbor) && distances[neighbor] != Double.POSITIVE_INFINITY)
+                {
+                    relax(neighbor, node, neighborWeights[j]);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            affected.clear(affectedNodes[i]);
+        }
+        propagate(excluded);
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > distances.length)
+        {
+            final int oldLength = distances.length;
+            final double[] oldDistances = distances;
+            final int[] oldPrevNode = prevNode;
+            allocate(Math.max(capacity, oldLength * 2));
+            System.arraycopy(oldDistances, 0, distances, 0, oldLength);
+            System.arraycopy(oldPrevNode, 0, prevNode, 0, oldLength);
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        distances = new double[capacity];
+        prevNode = new int[capacity];
+        affectedNodes = new int[capacity];
+        neighborTargets = new int[capacity];
+        neighborWeights = new double[capacity];
+        heap = new IndexedMinHeap(capacity);
+    }
+}
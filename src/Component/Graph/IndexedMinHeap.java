@@ -0,0 +1,142 @@
+package Component.Graph;
+
+import java.util.Arrays;
+
+/**
+ * 带下标索引的二叉最小堆，元素是 0 到 capacity - 1 的结点编号，支持 O(log n) 的插入、降低键值与弹出。
+ * 全部使用基本类型数组，重复使用时只需调用 clear()，不会产生新的对象。
+ */
+class IndexedMinHeap
+{
+    // 堆数组，heap[i] 为结点编号
+    private int[] heap;
+
+    // 结点编号在堆数组中的位置，不在堆中为 -1
+    private int[] positions;
+
+    // 结点当前的键值
+    private double[] keys;
+
+    private int size;
+
+    IndexedMinHeap(int capacity)
+    {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * 清空堆。如果容量不够会扩大到 capacity。
+     */
+    void clear(int capacity)
+    {
+        if (capacity > positions.length)
+        {
+            heap = new int[capacity];
+            positions = new int[capacity];
+            keys = new double[capacity];
+            Arrays.fill(positions, -1);
+        }
+        else
+        {
+            for (int i = 0; i < size; i++)
+            {
+                positions[heap[i]] = -1;
+            }
+        }
+        size = 0;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    boolean contains(int node)
+    {
+        return positions[node] != -1;
+    }
+
+    /**
+     * 插入结点，或在新键值更小时降低已在堆中结点的键值。
+     */
+    void insertOrDecrease(int node, double key)
+    {
+        if (positions[node] == -1)
+        {
+            heap[size] = node;
+            positions[node] = size;
+            keys[node] = key;
+            size++;
+            siftUp(size - 1);
+        }
+        else if (key < keys[node])
+        {
+            keys[node] = key;
+            siftUp(positions[node]);
+        }
+    }
+
+    /**
+     * 弹出键值最小的结点编号。
+     */
+    int poll()
+    {
+        final int top = heap[0];
+        size--;
+        positions[top] = -1;
+        if (size > 0)
+        {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int index)
+    {
+        final int node = heap[index];
+        while (index > 0)
+        {
+            final int parent = (index - 1) >>> 1;
+            if (keys[heap[parent]] <= keys[node])
+            {
+                break;
+            }
+            heap[index] = heap[parent];
+            positions[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = node;
+        positions[node] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        final int node = heap[index];
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+            {
+                child++;
+            }
+            if (keys[node] <= keys[heap[child]])
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = node;
+        positions[node] = index;
+    }
+}
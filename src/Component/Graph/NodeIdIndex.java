@@ -0,0 +1,174 @@
+package Component.Graph;
+
+import java.util.*;
+
+/**
+ * 结点名称与整数槽位编号之间的双向字典，两个方向的查找都是 O(1)。
+ * 删除结点只把槽位标记为已删除，回收之后才会被新加入的结点使用，因此其他结点的编号永远不会移动。
+ * 同一个名称只保存第一次加入时的 String 对象，之后输出的名称都是这个对象。
+ * 这个类本身不是线程安全的，由 Graph 的锁保护。
+ */
+class NodeIdIndex
+{
+    // 槽位到名称，空槽位为 null
+    private final List<String> nodeIds;
+
+    // 名称到槽位
+    private final Map<String, Integer> indexes;
+
+    // 空槽位栈
+    private int[] freeSlots;
+    private int freeSlotCount;
+
+    // 已删除但还没有回收的槽位。存储中可能还留有与它们相连的路径，回收之前不能重新使用
+    private final BitSet deadSlots;
+    private int deadSlotCount;
+
+    NodeIdIndex()
+    {
+        nodeIds = new ArrayList<>();
+        indexes = new HashMap<>();
+        freeSlots = new int[4];
+        deadSlots = new BitSet();
+    }
+
+    NodeIdIndex(List<String> nodeIds)
+    {
+        this();
+        for (String nodeId : nodeIds)
+        {
+            add(nodeId);
+        }
+    }
+
+    /**
+     * 结点数量。
+     */
+    int size()
+    {
+        return indexes.size();
+    }
+
+    /**
+     * 槽位编号的上限，包括空槽位。
+     */
+    int getSlotCount()
+    {
+        return nodeIds.size();
+    }
+
+    /**
+     * 已删除但还没有回收的槽位数量。
+     */
+    int getDeadSlotCount()
+    {
+        return deadSlotCount;
+    }
+
+    /**
+     * 返回槽位上的结点名称，空槽位和已删除的槽位返回 null。
+     */
+    String get(int index)
+    {
+        return nodeIds.get(index);
+    }
+
+    /**
+     * 返回结点名称对应的槽位，不存在时返回 -1。
+     */
+    int indexOf(String nodeId)
+    {
+        final Integer index = indexes.get(nodeId);
+        return index == null ? -1 : index;
+    }
+
+    boolean contains(String nodeId)
+    {
+        return indexes.containsKey(nodeId);
+    }
+
+    /**
+     * 添加一个结点并返回它的槽位，有空槽位时优先使用。已经存在时直接返回原来的槽位。
+     */
+    int add(String nodeId)
+    {
+        final Integer existing = indexes.get(nodeId);
+        if (existing != null)
+        {
+            return existing;
+        }
+
+        final int index;
+        if (freeSlotCount > 0)
+        {
+            index = freeSlots[--freeSlotCount];
+            nodeIds.set(index, nodeId);
+        }
+        else
+        {
+            index = nodeIds.size();
+            nodeIds.add(nodeId);
+        }
+        indexes.put(nodeId, index);
+        return index;
+    }
+
+    /**
+     * 删除槽位上的结点。名称立即失效，槽位被标记为已删除，调用 releaseDeadSlots 之后才能重新使用。
+     */
+    void remove(int index)
+    {
+        indexes.remove(nodeIds.set(index, null));
+        deadSlots.set(index);
+        deadSlotCount++;
+    }
+
+    /**
+     * 返回所有已删除但还没有回收的槽位。
+     */
+    int[] getDeadSlots()
+    {
+        return deadSlots.stream().toArray();
+    }
+
+    /**
+     * 回收所有已删除的槽位，留给之后加入的结点使用。调用前需要保证存储中已经没有与它们相连的路径。
+     */
+    void releaseDeadSlots()
+    {
+        for (int index = deadSlots.nextSetBit(0); index >= 0; index = deadSlots.nextSetBit(index + 1))
+        {
+            if (freeSlotCount == freeSlots.length)
+            {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            }
+            freeSlots[freeSlotCount++] = index;
+        }
+        deadSlots.clear();
+        deadSlotCount = 0;
+    }
+
+    /**
+     * 返回按槽位顺序排列的所有结点名称的副本，不包括空槽位。
+     */
+    List<String> toList()
+    {
+        final List<String> list = new ArrayList<>(indexes.size());
+        for (String nodeId : nodeIds)
+        {
+            if (nodeId != null)
+            {
+                list.add(nodeId);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 返回以槽位为下标的结点名称数组的副本，空槽位为 null。
+     */
+    String[] toSlotArray()
+    {
+        return nodeIds.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,165 @@
+package Component.Graph;
+
+import java.util.*;
+
+/**
+ * 不可变的路由表，记录从某个结点出发到各个可到达结点的下一跳、最短长度与完整路径。
+ * 路由表对应图的某一个拓扑版本，图没有变化时可以被任意多个线程无锁读取。
+ */
+public class RoutingTable
+{
+    /**
+     * 到一个目标结点的路由。
+     */
+    public static class Route
+    {
+        private final String destinationNodeId;
+        private final String nextHopNodeId;
+        private final double cost;
+
+        // 从起始结点到目标结点经过的所有结点，包括两端
+        private final List<String> hops;
+
+        public Route(String destinationNodeId, String nextHopNodeId, double cost, List<String> hops)
+        {
+            this.destinationNodeId = destinationNodeId;
+            this.nextHopNodeId = nextHopNodeId;
+            this.cost = cost;
+            this.hops = Collections.unmodifiableList(new ArrayList<>(hops));
+        }
+
+        public String getDestinationNodeId()
+        {
+            return destinationNodeId;
+        }
+
+        /**
+         * 下一跳结点。目标就是起始结点时返回起始结点自己。
+         */
+        public String getNextHopNodeId()
+        {
+            return nextHopNodeId;
+        }
+
+        public double getCost()
+        {
+            return cost;
+        }
+
+        public List<String> getHops()
+        {
+            return hops;
+        }
+
+        /**
+         * 把路径上的结点名称首尾相接，例如 ADEC。
+         */
+        public String getPathString()
+        {
+            StringBuilder builder = new StringBuilder();
+            for (String hop : hops)
+            {
+                builder.append(hop);
+            }
+            return builder.toString();
+        }
+    }
+
+    // 计算这张路由表时图的拓扑版本
+    private final long version;
+
+    private final String sourceNodeId;
+
+    // 按图中结点顺序排列的路由
+    private final List<Route> routes;
+
+    private final Map<String, Route> routesByDestination;
+
+    // 计算时无法到达的结点（孤岛）
+    private final List<String> unreachableNodeIds;
+
+    public RoutingTable(long version, String sourceNodeId, List<Route> routes, List<String> unreachableNodeIds)
+    {
+        this.version = version;
+        this.sourceNodeId = sourceNodeId;
+        this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+        this.unreachableNodeIds = Collections.unmodifiableList(new ArrayList<>(unreachableNodeIds));
+
+        Map<String, Route> map = new HashMap<>();
+        for (Route route : routes)
+        {
+            map.put(route.getDestinationNodeId(), route);
+        }
+        this.routesByDestination = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 由最短路径计算结果创建路由表。
+     *
+     * @param nodeIds   计算时以槽位为下标的结点名称数组，空槽位为 null。
+     * @param prevNode  上一结点编号数组。
+     * @param distances 最短长度数组。
+     */
+    static RoutingTable fromShortestPaths(long version, String[] nodeIds, int sourceIndex, int[] prevNode, double[] distances)
+    {
+        final List<Route> routes = new ArrayList<>();
+        final List<String> unreachableNodeIds = new ArrayList<>();
+        final LinkedList<String> hops = new LinkedList<>();
+
+        for (int i = 0; i < nodeIds.length; i++)
+        {
+            if (nodeIds[i] == null)
+            {
+                continue;
+            }
+            // 孤岛结点不生成路由
+            if (distances[i] == Graph.INF)
+            {
+                unreachableNodeIds.add(nodeIds[i]);
+                continue;
+            }
+
+            hops.clear();
+            int currentNodeIndex = i;
+            while (currentNodeIndex != sourceIndex)
+            {
+                hops.addFirst(nodeIds[currentNodeIndex]);
+                currentNodeIndex = prevNode[currentNodeIndex];
+            }
+            // 添加上出发结点
+            hops.addFirst(nodeIds[sourceIndex]);
+
+            final String nextHop = hops.size() > 1 ? hops.get(1) : hops.getFirst();
+            routes.add(new Route(nodeIds[i], nextHop, distances[i], hops));
+        }
+        return new RoutingTable(version, nodeIds[sourceIndex], routes, unreachableNodeIds);
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public String getSourceNodeId()
+    {
+        return sourceNodeId;
+    }
+
+    public List<Route> getRoutes()
+    {
+        return routes;
+    }
+
+    /**
+     * 获取到某个结点的路由，不可到达时返回 null。
+     */
+    public Route getRoute(String destinationNodeId)
+    {
+        return routesByDestination.get(destinationNodeId);
+    }
+
+    public List<String> getUnreachableNodeIds()
+    {
+        return unreachableNodeIds;
+    }
+}
@@ -0,0 +1,97 @@
+package Component.Graph;
+
+import java.util.BitSet;
+
+/**
+ * 基于二叉堆的 Dijkstra 最短路径计算器，在 CompactAdjacency 视图上运行，复杂度 O(E log V)。
+ * 堆与已处理集合在多次计算之间重复使用，因此一个对象同一时间只能被一个线程使用。
+ */
+public class ShortestPathEngine
+{
+    private final IndexedMinHeap heap;
+
+    // 已经找到最短路径的结点集合
+    private final BitSet settled;
+
+    public ShortestPathEngine(int capacity)
+    {
+        heap = new IndexedMinHeap(capacity);
+        settled = new BitSet(capacity);
+    }
+
+    /**
+     * 计算从 source 出发到各结点的最短路径，返回 Pair(上一结点编号数组, 最短长度数组)。
+     * 上一结点编号数组：下标 i 存储的数据 j 代表想要到达 i 号结点，需要先到达 j 号结点。
+     * 最短长度数组：下标 i 存储的数据 j 代表从 source 号结点到 i 号结点的最短长度是 j。
+     */
+    public Pair<int[], double[]> run(CompactAdjacency adjacency, int source)
+    {
+        final int[] prevNode = new int[adjacency.getNodeCount()];
+        final double[] distances = new double[adjacency.getNodeCount()];
+        run(adjacency, source, prevNode, distances);
+        return new Pair<>(prevNode, distances);
+    }
+
+    /**
+     * 计算从 source 出发到各结点的最短路径，结果写入调用者提供的数组。
+     * prevNode[source] 等于 source；无法到达的结点 prevNode 为 -1，距离为 Graph.INF。
+     */
+    public void run(CompactAdjacency adjacency, int source, int[] prevNode, double[] distances)
+    {
+        run(adjacency, source, prevNode, distances, null);
+    }
+
+    /**
+     * 与 run(adjacency, source, prevNode, distances) 相同，同时按确定最短路径的先后顺序把结点编号写入 settledOrder。
+     * 每个结点的上一结点一定排在它前面。
+     *
+     * @param settledOrder 可以为 null。
+     * @return 可以到达的结点数量（包括 source）。
+     */
+    public int run(CompactAdjacency adjacency, int source, int[] prevNode, double[] distances, int[] settledOrder)
+    {
+        final int nodeCount = adjacency.getNodeCount();
+        heap.clear(nodeCount);
+        settled.clear();
+
+        for (int i = 0; i < nodeCount; i++)
+        {
+            prevNode[i] = -1;
+            distances[i] = Graph.INF;
+        }
+
+        prevNode[source] = source;
+        distances[source] = 0;
+        heap.insertOrDecrease(source, 0);
+
+        int settledCount = 0;
+        while (!heap.isEmpty())
+        {
+            final int current = heap.poll();
+            settled.set(current);
+            if (settledOrder != null)
+            {
+                settledOrder[settledCount] = current;
+            }
+            settledCount++;
+
+            for (int edge = adjacency.edgeBegin(current); edge < adjacency.edgeEnd(current); edge++)
+            {
+                final int target = adjacency.edgeTarget(edge);
+                if (settled.get(target))
+                {
+                    continue;
+                }
+                final double newDistance = distances[current] + adjacency.edgeWeight(edge);
+                // 新路径比老路径更短，或者这个结点还没有被访问过，则更新路径长度与上一结点编号
+                if (distances[target] == Graph.INF || newDistance < distances[target])
+                {
+                    distances[target] = newDistance;
+                    prevNode[target] = current;
+                    heap.insertOrDecrease(target, newDistance);
+                }
+            }
+        }
+        return settledCount;
+    }
+}
@@ -0,0 +1,177 @@
+package Component.Graph;
+
+/**
+ * 邻接表存储。每个槽位保存自己的邻居编号与路径长度数组，数组容量不够时按倍数扩大。
+ * 内存占用为 O(V + E)，读取邻居的时间与邻居数量成正比，适合路由器这种每个结点只有少数邻居的图。
+ */
+class SparseAdjacencyStorage implements GraphStorage
+{
+    private static final int[] NO_TARGETS = new int[0];
+    private static final double[] NO_WEIGHTS = new double[0];
+
+    // 每个槽位的邻居编号
+    private int[][] targets;
+
+    // 每个槽位到对应邻居的路径长度
+    private double[][] weights;
+
+    // 每个槽位的邻居数量
+    private int[] degrees;
+
+    // 已经使用的槽位数量
+    private int slotCount;
+
+    private int edgeCount;
+
+    SparseAdjacencyStorage()
+    {
+        targets = new int[0][];
+        weights = new double[0][];
+        degrees = new int[0];
+    }
+
+    public GraphStorageMode getMode()
+    {
+        return GraphStorageMode.SPARSE;
+    }
+
+    public int getNodeCount()
+    {
+        return slotCount;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    public void ensureSlots(int slotCount)
+    {
+        if (slotCount > degrees.length)
+        {
+            final int capacity = Math.max(slotCount, Math.max(4, degrees.length * 2));
+            final int[][] newTargets = new int[capacity][];
+            final double[][] newWeights = new double[capacity][];
+            final int[] newDegrees = new int[capacity];
+            System.arraycopy(targets, 0, newTargets, 0, targets.length);
+            System.arraycopy(weights, 0, newWeights, 0, weights.length);
+            System.arraycopy(degrees, 0, newDegrees, 0, degrees.length);
+            for (int i = targets.length; i < capacity; i++)
+            {
+                newTargets[i] = NO_TARGETS;
+                newWeights[i] = NO_WEIGHTS;
+            }
+            targets = newTargets;
+            weights = newWeights;
+            degrees = newDegrees;
+        }
+        this.slotCount = Math.max(this.slotCount, slotCount);
+    }
+
+    public double getWeight(int from, int to)
+    {
+        final int position = find(from, to);
+        return position == -1 ? Graph.INF : weights[from][position];
+    }
+
+    public void setWeight(int from, int to, double weight)
+    {
+        if (from == to)
+        {
+            return;
+        }
+        final boolean existed = find(from, to) != -1;
+        if (weight == Graph.INF)
+        {
+            if (existed)
+            {
+                removeHalfEdge(from, to);
+                removeHalfEdge(to, from);
+                edgeCount--;
+            }
+        }
+        else
+        {
+            putHalfEdge(from, to, weight);
+            putHalfEdge(to, from, weight);
+            if (!existed)
+            {
+                edgeCount++;
+            }
+        }
+    }
+
+    public void clearNode(int node)
+    {
+        for (int i = 0; i < degrees[node]; i++)
+        {
+            removeHalfEdge(targets[node][i], node);
+            edgeCount--;
+        }
+        degrees[node] = 0;
+    }
+
+    public int getNeighbors(int node, int[] targets, double[] weights)
+    {
+        final int degree = degrees[node];
+        System.arraycopy(this.targets[node], 0, targets, 0, degree);
+        System.arraycopy(this.weights[node], 0, weights, 0, degree);
+        return degree;
+    }
+
+    /**
+     * 找到 to 在 from 的邻居数组中的位置，不存在返回 -1。
+     */
+    private int find(int from, int to)
+    {
+        final int[] list = targets[from];
+        for (int i = 0; i < degrees[from]; i++)
+        {
+            if (list[i] == to)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void putHalfEdge(int from, int to, double weight)
+    {
+        final int position = find(from, to);
+        if (position != -1)
+        {
+            weights[from][position] = weight;
+            return;
+        }
+
+        final int degree = degrees[from];
+        if (degree == targets[from].length)
+        {
+            final int capacity = Math.max(4, degree * 2);
+            final int[] newTargets = new int[capacity];
+            final double[] newWeights = new double[capacity];
+            System.arraycopy(targets[from], 0, newTargets, 0, degree);
+            System.arraycopy(weights[from], 0, newWeights, 0, degree);
+            targets[from] = newTargets;
+            weights[from] = newWeights;
+        }
+        targets[from][degree] = to;
+        weights[from][degree] = weight;
+        degrees[from] = degree + 1;
+    }
+
+    /**
+     * 删除 from 的邻居数组中的 to，用最后一个元素填补空位。
+     */
+    private void removeHalfEdge(int from, int to)
+    {
+        final int position = find(from, to);
+        if (position != -1)
+        {
+            final int last = degrees[from] - 1;
+            targets[from][position] = targets[from][last];
+            weights[from][position] = weights[from][last];
+            degrees[from] = last;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Component.Graph;
+
+import java.util.*;
+
+/**
+ * 路径集合的摘要。
+ * 图中一条路径的方向取决于两端在图中的编号，不同结点的图中同一条路径的方向可能相反，因此摘要把两端按名称排序后计算，与方向无关。
+ * 两端中名称较小的一端为路径的起点。集合的摘要为每条路径的 64 位散列值之和，与路径的顺序无关，按起点分组的摘要之和等于整体的摘要。
+ */
+public class TopologyDigest
+{
+    private TopologyDigest()
+    {
+    }
+
+    /**
+     * 返回路径的起点，即两端中名称较小的一端。
+     */
+    public static String originOf(Path path)
+    {
+        return path.getStartNodeId().compareTo(path.getEndNodeId()) <= 0 ? path.getStartNodeId() : path.getEndNodeId();
+    }
+
+    /**
+     * 返回与方向无关的路径标识。
+     */
+    public static String keyOf(Path path)
+    {
+        final String origin = originOf(path);
+        return origin + '\0' + (origin == path.getStartNodeId() ? path.getEndNodeId() : path.getStartNodeId());
+    }
+
+    /**
+     * 返回路径的散列值，包括两端与长度。
+     */
+    public static long hash(Path path)
+    {
+        final String origin = originOf(path);
+        final String other = origin == path.getStartNodeId() ? path.getEndNodeId() : path.getStartNodeId();
+        long hash = origin.hashCode() * 0x9E3779B97F4A7C15L + other.hashCode();
+        hash = mix(hash) + Double.doubleToLongBits(path.getPathLength());
+        return mix(hash);
+    }
+
+    /**
+     * 返回所有路径的摘要。
+     */
+    public static long digest(List<Path> paths)
+    {
+        long digest = 0;
+        for (Path path : paths)
+        {
+            digest += hash(path);
+        }
+        return digest;
+    }
+
+    /**
+     * 返回按起点分组的摘要。
+     */
+    public static Map<String, Long> originDigests(List<Path> paths)
+    {
+        final Map<String, Long> digests = new HashMap<>();
+        for (Path path : paths)
+        {
+            digests.merge(originOf(path), hash(path), Long::sum);
+        }
+        return digests;
+    }
+
+    // SplitMix64 的最后一步，让输入的每一位都影响输出的所有位
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,335 @@
+package Component;
+
+import Component.Graph.Graph;
+import Component.Graph.Path;
+import Component.Message.NeighborPathInfo;
+import Component.Sender.TimingSender;
+import util.Broadcaster;
+import util.Throttle;
+import util.TimingWheel;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 链路状态路由。
+ * 每个结点在每个区域内发布一条只描述自己的路径与汇总路径的通告（NeighborPathInfo），自己的路径变化时发布新序号的通告。
+ * 发布经过节流：安静时的第一次变化立即发布，路径反复变化时多次变化合并为一次发布，两次发布之间的间隔按指数增长。
+ * 每个区域有一个链路状态数据库，保存每个发布者最新的通告；收到序号更大的通告时替换旧的并立即转发给区域内的所有邻居，否则丢弃，
+ * 因此每条通告在每个结点只转发一次，故障的传播时间只取决于网络直径与单跳的延迟，与发送周期无关。
+ * 区域拓扑由数据库中的通告生成：一条路径只有两端的通告都包含对方时才算连通。
+ * 通告定时以新序号重新发布；超过最大存活时间没有更新的通告从数据库中删除。
+ */
+public class LinkStateRouter implements TimingSender, AreaRouter.OwnStateListener
+{
+    // 数据库老化检查的间隔，单位为毫秒
+    private static final long AGING_CHECK_INTERVAL = 1000;
+
+    private final String nodeId;
+    private final AreaRouter areaRouter;
+    private final Broadcaster broadcaster;
+
+    // 每个区域内所有邻居结点的端口
+    private final Map<String, List<Integer>> areaNeighborPorts;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    // 重新发布自己通告的间隔，单位为毫秒
+    private final long refreshInterval;
+
+    // 通告的最大存活时间，单位为秒
+    private final int maxAge;
+
+    // 每个区域的链路状态数据库，发布者名称到它最新的通告
+    private final Map<String, Map<String, Entry>> databases;
+
+    // 自己的通告的序号。以启动时间开始，重新启动后的通告一定比启动前的新
+    private long sequence;
+
+    // 定时重新发布与老化检查的任务，start 之后才有
+    private TimingWheel.Timeout refreshTimeout;
+    private TimingWheel.Timeout agingTimeout;
+
+    // 发布自己通告的节流器
+    private final Throttle originateThrottle;
+
+    // 等待节流器发布通告的区域，使用 areaRouter 的锁保护
+    private final Set<String> pendingAreas;
+
+    /**
+     * 数据库中的一条通告。
+     */
+    private static class Entry
+    {
+        final NeighborPathInfo advertisement;
+
+        // 收到通告的时间，用来计算当前的 age
+        final long receivedTime;
+
+        Entry(NeighborPathInfo advertisement)
+        {
+            this.advertisement = advertisement;
+            this.receivedTime = System.currentTimeMillis();
+        }
+
+        int getAge()
+        {
+            return advertisement.getAge() + (int) ((System.currentTimeMillis() - receivedTime) / 1000);
+        }
+
+        boolean hasLinkTo(String nodeId)
+        {
+            for (Path path : advertisement.getPathList())
+            {
+                if (path.getEndNodeId().equals(nodeId))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 创建后需要在添加邻居路径之前把自己设为 areaRouter 的监听者。
+     *
+     * @param areaNeighborPorts 区域到该区域内所有邻居结点端口号的映射。
+     * @param neighborPorts     邻居结点名称到端口的映射。
+     * @param refreshInterval   重新发布自己通告的间隔，单位为毫秒。
+     * @param maxAge            通告的最大存活时间，单位为秒。
+     * @param floodInitialDelay 安静时第一次变化到发布通告的延迟，单位为毫秒。
+     * @param floodHoldTime     持续变化时两次发布之间最短的间隔，单位为毫秒。
+     * @param floodMaxHoldTime  持续变化时两次发布之间最长的间隔，单位为毫秒。
+     */
+    public LinkStateRouter(String nodeId, AreaRouter areaRouter, Broadcaster broadcaster, Map<String, List<Integer>> areaNeighborPorts, Map<String, Integer> neighborPorts, long refreshInterval, int maxAge, long floodInitialDelay, long floodHoldTime, long floodMaxHoldTime)
+    {
+        this.nodeId = nodeId;
+        this.areaRouter = areaRouter;
+        this.broadcaster = broadcaster;
+        this.areaNeighborPorts = areaNeighborPorts;
+        this.neighborPorts = neighborPorts;
+        this.refreshInterval = refreshInterval;
+        this.maxAge = maxAge;
+        this.databases = new HashMap<>();
+        this.sequence = System.currentTimeMillis();
+        this.pendingAreas = new HashSet<>();
+        this.originateThrottle = new Throttle(floodInitialDelay, floodHoldTime, floodMaxHoldTime, this::originatePending);
+    }
+
+    public void start()
+    {
+        // 定时以新序号重新发布自己的通告，防止它在其他结点老化。定时的发布不经过节流。
+        // 发布与老化检查需要区域的锁并且会发送数据包，都在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+        refreshTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(() ->
+        {
+            final List<NeighborPathInfo> advertisements = new ArrayList<>();
+            synchronized (areaRouter.getLock())
+            {
+                for (String areaId : areaRouter.getAreaIds())
+                {
+                    advertisements.add(originate(areaId));
+                }
+            }
+            advertisements.forEach(this::flood);
+        }), refreshInterval, refreshInterval);
+
+        agingTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(this::removeExpired), AGING_CHECK_INTERVAL, AGING_CHECK_INTERVAL);
+    }
+
+    public void stop()
+    {
+        refreshTimeout.cancel();
+        agingTimeout.cancel();
+    }
+
+    /**
+     * 自己的路径或汇总路径变化，由节流器安排发布新的通告。
+     */
+    public void ownStateChanged(String areaId)
+    {
+        synchronized (areaRouter.getLock())
+        {
+            pendingAreas.add(areaId);
+        }
+        originateThrottle.trigger();
+    }
+
+    /**
+     * 为所有等待发布的区域发布通告。
+     */
+    private void originatePending()
+    {
+        final List<NeighborPathInfo> advertisements = new ArrayList<>();
+        synchronized (areaRouter.getLock())
+        {
+            for (String areaId : pendingAreas)
+            {
+                advertisements.add(originate(areaId));
+            }
+            pendingAreas.clear();
+        }
+        advertisements.forEach(this::flood);
+    }
+
+    /**
+     * 以新序号生成自己在区域内的通告并写入数据库，返回需要发给邻居的通告。调用时需要持有 areaRouter 的锁，由调用者在释放锁之后发送。
+     */
+    private NeighborPathInfo originate(String areaId)
+    {
+        final NeighborPathInfo advertisement = new NeighborPathInfo(nodeId, areaRouter.getOwnLinks(areaId), areaId, ++sequence, 0, areaRouter.getOwnSummaries(areaId));
+        databases.computeIfAbsent(areaId, key -> new HashMap<>()).put(nodeId, new Entry(advertisement));
+        rebuildArea(areaId);
+        return advertisement;
+    }
+
+    /**
+     * 处理收到的通告。比数据库中的新时保存并转发，否则丢弃。发送都在释放 areaRouter 的锁之后进行，发送阻塞时不影响其他线程修改拓扑。
+     */
+    public void receive(NeighborPathInfo advertisement) throws IOException
+    {
+        final String areaId = advertisement.getAreaId();
+        final String originId = advertisement.getSenderNodeId();
+        if (originId.equals(nodeId) || advertisement.getAge() >= maxAge)
+        {
+            return;
+        }
+
+        final NeighborPathInfo forwarded;
+        final Integer originPort = neighborPorts.get(originId);
+        final List<NeighborPathInfo> databaseDump = new ArrayList<>();
+        synchronized (areaRouter.getLock())
+        {
+            if (areaRouter.getAreaGraph(areaId) == null)
+            {
+                return;
+            }
+            final Map<String, Entry> database = databases.computeIfAbsent(areaId, key -> new HashMap<>());
+            final Entry old = database.get(originId);
+            if (old != null && old.advertisement.getSequence() >= advertisement.getSequence())
+            {
+                return;
+            }
+            final Entry received = new Entry(advertisement);
+            database.put(originId, received);
+            forwarded = advertisement.withAge(advertisement.getAge() + 1);
+
+            // 邻居刚与自己建立连接时，把整个数据库发给它，让它不必等待其他结点重新发布
+            if (originPort != null && (old == null || !old.hasLinkTo(nodeId)) && received.hasLinkTo(nodeId))
+            {
+                for (Entry entry : database.values())
+                {
+                    if (entry != received)
+                    {
+                        databaseDump.add(entry.advertisement.withAge(entry.getAge() + 1));
+                    }
+                }
+            }
+            rebuildArea(areaId);
+        }
+
+        flood(forwarded);
+        for (NeighborPathInfo entry : databaseDump)
+        {
+            broadcaster.send(entry, originPort);
+        }
+    }
+
+    /**
+     * 删除超过最大存活时间的通告。
+     */
+    private void removeExpired()
+    {
+        synchronized (areaRouter.getLock())
+        {
+            for (Map.Entry<String, Map<String, Entry>> database : databases.entrySet())
+            {
+                final boolean removed = database.getValue().entrySet().removeIf(entry -> !entry.getKey().equals(nodeId) && entry.getValue().getAge() >= maxAge);
+                if (removed)
+                {
+                    rebuildArea(database.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 把通告发给区域内的所有邻居。
+     */
+    private void flood(NeighborPathInfo advertisement)
+    {
+        final List<Integer> ports = areaNeighborPorts.get(advertisement.getAreaId());
+        if (ports == null)
+        {
+            return;
+        }
+        try
+        {
+            broadcaster.broadcast(advertisement, ports);
+        }
+        catch (IOException e)
+        {
+            System.err.println("链路状态通告发送出现错误");
+            System.err.println(e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * 根据数据库重新生成区域拓扑与区域内收到的汇总路径，只把变化交给 areaRouter。调用时需要持有 areaRouter 的锁。
+     */
+    private void rebuildArea(String areaId)
+    {
+        final Graph areaGraph = areaRouter.getAreaGraph(areaId);
+        final Map<String, Entry> database = databases.get(areaId);
+        if (areaGraph == null || database == null)
+        {
+            return;
+        }
+
+        // 两端的通告都包含对方的路径才算连通，两端的长度不同时取较短的
+        final Map<String, Path> links = new HashMap<>();
+        final List<Path> summaries = new ArrayList<>();
+        for (Entry entry : database.values())
+        {
+            for (Path path : entry.advertisement.getPathList())
+            {
+                final Entry other = database.get(path.getEndNodeId());
+                if (other == null || !other.hasLinkTo(path.getStartNodeId()))
+                {
+                    continue;
+                }
+                final String start = path.getStartNodeId();
+                final String end = path.getEndNodeId();
+                final String key = start.compareTo(end) < 0 ? start + '\0' + end : end + '\0' + start;
+                final Path existing = links.get(key);
+                if (existing == null || path.getPathLength() < existing.getPathLength())
+                {
+                    links.put(key, path);
+                }
+            }
+            if (!entry.advertisement.getSenderNodeId().equals(nodeId))
+            {
+                summaries.addAll(entry.advertisement.getSummaryList());
+            }
+        }
+
+        final List<Path> pathsToUpdate = new ArrayList<>();
+        for (Path path : areaGraph.getPathList())
+        {
+            final String start = path.getStartNodeId();
+            final String end = path.getEndNodeId();
+            final Path target = links.remove(start.compareTo(end) < 0 ? start + '\0' + end : end + '\0' + start);
+            if (target == null)
+            {
+                pathsToUpdate.add(new Path(start, end, Graph.INF));
+            }
+            else if (target.getPathLength() != path.getPathLength())
+            {
+                pathsToUpdate.add(target);
+            }
+        }
+        pathsToUpdate.addAll(links.values());
+        areaRouter.updateArea(areaId, pathsToUpdate, summaries);
+    }
+}
@@ -0,0 +1,33 @@
+package Component.Message;
+
+import Component.Graph.Path;
+
+import java.util.List;
+
+/**
+ * 距离向量。用于网络传输。
+ * 每条路径的起点都是发送者，终点为目标结点，长度为发送者到目标的最短长度。没有写出的目标表示发送者不可到达。
+ */
+public class DistanceVector
+{
+    // 发送者的 NodeId
+    private final String senderId;
+
+    private final List<Path> routeList;
+
+    public DistanceVector(String senderId, List<Path> routeList)
+    {
+        this.senderId = senderId;
+        this.routeList = routeList;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+
+    public List<Path> getRouteList()
+    {
+        return routeList;
+    }
+}
@@ -0,0 +1,81 @@
+package Component.Message;
+
+import Component.Graph.Path;
+
+import java.util.*;
+
+/**
+ * 增量路径信息。用于网络传输。
+ * 发送者在每个区域内为自己发布的路径维护一个序号，每次变化加一。接收者已经确认到 baseSequence 时，应用这些变化后就到达 sequence。
+ * full 为 true 时列表是全部路径，接收者直接替换；baseSequence 与 sequence 相等且列表为空时只用于检查双方的序号是否一致。
+ */
+public class GraphDelta
+{
+    // 发送者每次启动时不同，接收者据此识别发送者重新启动过
+    private final long epoch;
+
+    private final long baseSequence;
+    private final long sequence;
+    private final boolean full;
+
+    // 变化的路径，长度为 INF 表示删除
+    private final List<Path> pathList;
+
+    // 变化的汇总路径，长度为 INF 表示删除
+    private final List<Path> summaryList;
+
+    private final String areaId;
+    private final String senderId;
+
+    public GraphDelta(long epoch, long baseSequence, long sequence, boolean full, List<Path> pathList, List<Path> summaryList, String areaId, String senderId)
+    {
+        this.epoch = epoch;
+        this.baseSequence = baseSequence;
+        this.sequence = sequence;
+        this.full = full;
+        this.pathList = pathList;
+        this.summaryList = summaryList;
+        this.areaId = areaId;
+        this.senderId = senderId;
+    }
+
+    public long getEpoch()
+    {
+        return epoch;
+    }
+
+    public long getBaseSequence()
+    {
+        return baseSequence;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public boolean isFull()
+    {
+        return full;
+    }
+
+    public List<Path> getPathList()
+    {
+        return new ArrayList<>(pathList);
+    }
+
+    public List<Path> getSummaryList()
+    {
+        return new ArrayList<>(summaryList);
+    }
+
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+}
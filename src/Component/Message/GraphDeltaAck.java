@@ -0,0 +1,45 @@
+package Component.Message;
+
+/**
+ * 增量路径信息的确认。用于网络传输。
+ * 告诉 GraphDelta 的发送者，确认者已经拥有它在某个区域内到 sequence 为止的路径；sequence 为 -1 表示需要全部路径。
+ */
+public class GraphDeltaAck
+{
+    // 被确认的 GraphDelta 的 epoch
+    private final long epoch;
+
+    private final long sequence;
+    private final String areaId;
+
+    // 确认者的 NodeId
+    private final String senderId;
+
+    public GraphDeltaAck(long epoch, long sequence, String areaId, String senderId)
+    {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.areaId = areaId;
+        this.senderId = senderId;
+    }
+
+    public long getEpoch()
+    {
+        return epoch;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+}
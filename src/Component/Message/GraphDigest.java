@@ -0,0 +1,62 @@
+package Component.Message;
+
+import java.util.*;
+
+/**
+ * 拓扑摘要。用于网络传输。
+ * 发送者在一个区域内所知的全部路径与汇总路径各自的摘要。request 为 false 时是每个周期发给邻居的摘要，只有两个摘要值；
+ * 接收者发现与自己的摘要不同时回复 request 为 true 的摘要，附带自己按起点分组的路径摘要，请对方只发送摘要不同的分组。
+ */
+public class GraphDigest
+{
+    private final boolean request;
+
+    private final long pathDigest;
+    private final long summaryDigest;
+
+    // 起点到该起点所有路径的摘要，只在 request 为 true 时有内容
+    private final Map<String, Long> originDigests;
+
+    private final String areaId;
+    private final String senderId;
+
+    public GraphDigest(boolean request, long pathDigest, long summaryDigest, Map<String, Long> originDigests, String areaId, String senderId)
+    {
+        this.request = request;
+        this.pathDigest = pathDigest;
+        this.summaryDigest = summaryDigest;
+        this.originDigests = originDigests;
+        this.areaId = areaId;
+        this.senderId = senderId;
+    }
+
+    public boolean isRequest()
+    {
+        return request;
+    }
+
+    public long getPathDigest()
+    {
+        return pathDigest;
+    }
+
+    public long getSummaryDigest()
+    {
+        return summaryDigest;
+    }
+
+    public Map<String, Long> getOriginDigests()
+    {
+        return new HashMap<>(originDigests);
+    }
+
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+}
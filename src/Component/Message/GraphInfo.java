@@ -1,6 +1,5 @@
 package Component.Message;
 
-import Component.Graph.Graph;
 import Component.Graph.Path;
 
 import java.io.Serializable;
@@ -8,16 +7,26 @@ import java.util.*;
 
 /**
  * 路径信息。用于网络传输。
+ * 每个区域单独发送，只包含发送者所知的该区域内的路径，以及区域边界结点发布到该区域的汇总路径。
  */
 public class GraphInfo implements Serializable
 {
     // 所有路径的列表
     private final List<Path> pathList;
+
+    // 区域内所有汇总路径的列表
+    private final List<Path> summaryList;
+
+    // 路径所在的区域
+    private final String areaId;
+
     private final String senderId;
 
-    public GraphInfo(Graph graph, String nodeId)
+    public GraphInfo(List<Path> pathList, List<Path> summaryList, String areaId, String nodeId)
     {
-        this.pathList = graph.getPathList();
+        this.pathList = pathList;
+        this.summaryList = summaryList;
+        this.areaId = areaId;
         this.senderId = nodeId;
     }
 
@@ -26,6 +35,16 @@ public class GraphInfo implements Serializable
         return new ArrayList<>(pathList);
     }
 
+    public List<Path> getSummaryList()
+    {
+        return new ArrayList<>(summaryList);
+    }
+
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
     public String getSenderId()
     {
         return senderId;
@@ -0,0 +1,59 @@
+package Component.Message;
+
+import Component.Graph.Path;
+
+import java.util.*;
+
+/**
+ * 拓扑修复。用于网络传输。
+ * 回复 GraphDigest 的请求，只包含摘要不同的那些起点的全部路径。接收者只在这些起点的范围内与自己的拓扑比较，
+ * 列表中没有的路径视为已删除。汇总路径的摘要相同时 summaryList 为 null。
+ */
+public class GraphRepair
+{
+    // 修复的起点
+    private final List<String> originIds;
+
+    // 这些起点的所有路径
+    private final List<Path> pathList;
+
+    // 区域内所有汇总路径，不需要修复时为 null
+    private final List<Path> summaryList;
+
+    private final String areaId;
+    private final String senderId;
+
+    public GraphRepair(List<String> originIds, List<Path> pathList, List<Path> summaryList, String areaId, String senderId)
+    {
+        this.originIds = originIds;
+        this.pathList = pathList;
+        this.summaryList = summaryList;
+        this.areaId = areaId;
+        this.senderId = senderId;
+    }
+
+    public List<String> getOriginIds()
+    {
+        return new ArrayList<>(originIds);
+    }
+
+    public List<Path> getPathList()
+    {
+        return new ArrayList<>(pathList);
+    }
+
+    public List<Path> getSummaryList()
+    {
+        return summaryList == null ? null : new ArrayList<>(summaryList);
+    }
+
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+}
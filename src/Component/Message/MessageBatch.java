@@ -0,0 +1,21 @@
+package Component.Message;
+
+import java.util.List;
+
+/**
+ * 批量数据包。发送方在一个批量窗口内发往同一端口的多个消息合并在一个数据包中，接收方解码后逐个处理。
+ */
+public class MessageBatch
+{
+    private final List<Object> messages;
+
+    public MessageBatch(List<Object> messages)
+    {
+        this.messages = messages;
+    }
+
+    public List<Object> getMessages()
+    {
+        return messages;
+    }
+}
@@ -0,0 +1,835 @@
+package Component.Message;
+
+import Component.Graph.Path;
+
+import util.TrafficStatistics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 消息的二进制编码，代替 Java 序列化。
+ * 格式为：1 字节版本号，1 字节消息类型，结点名称表，消息内容。
+ * 结点名称表为 varint 的名称数量，之后每个名称为 varint 的 UTF-8 字节数与字节内容；消息中的结点与区域都用名称表中的编号表示。
+ * 路径为定长记录：起点编号、终点编号与 8 字节的长度。编号的宽度由名称表的大小决定，为 1、2 或 4 字节，不需要单独写出。
+ * 编码与解码都直接读写调用者提供的 ByteBuffer，可以重复使用同一个缓冲区。
+ * 批量数据包把多个消息放在一个数据包中：1 字节版本号，1 字节类型，varint 的消息数量，之后每个消息为 varint 的字节数与完整的消息编码。
+ * 分片为：1 字节版本号，1 字节类型，4 字节消息编号，varint 的分片序号与分片数量，之后直到数据包结尾都是原消息编码的一段。
+ * 类型的最高位为 1 表示消息经过压缩：之后为 varint 的原消息去掉版本号与类型后的字节数，以及这些字节用 Deflater 压缩的结果。
+ * 名称表已经让每个结点名称只出现一次，压缩使用的预设字典是路径长度常见的整数值的 double 编码。
+ */
+public class MessageCodec
+{
+    // 协议版本，格式不兼容的修改需要加一
+    public static final byte VERSION = 2;
+
+    private static final byte TYPE_HEART_BEAT_PACKAGE = 1;
+    private static final byte TYPE_GRAPH_INFO = 2;
+    private static final byte TYPE_NEIGHBOR_PATH_INFO = 3;
+    private static final byte TYPE_GRAPH_DELTA = 4;
+    private static final byte TYPE_GRAPH_DELTA_ACK = 5;
+    private static final byte TYPE_DISTANCE_VECTOR = 6;
+    private static final byte TYPE_MESSAGE_BATCH = 7;
+    private static final byte TYPE_MESSAGE_FRAGMENT = 8;
+    private static final byte TYPE_GRAPH_DIGEST = 9;
+    private static final byte TYPE_GRAPH_REPAIR = 10;
+
+    // 分片头部的最大字节数
+    public static final int MAX_FRAGMENT_HEADER_SIZE = 2 + 4 + 5 + 5;
+
+    // 一个分片中原消息编码的最小字节数，数据包的最大字节数至少为分片头部加上这个值
+    public static final int MIN_FRAGMENT_PAYLOAD_SIZE = 64;
+
+    // 被分片的消息编码的最大字节数
+    public static final int MAX_FRAGMENTED_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    // 一个消息最多的分片数量。分片数量来自数据包，需要先检查再按它分配内存
+    public static final int MAX_FRAGMENT_COUNT = (MAX_FRAGMENTED_MESSAGE_SIZE + MIN_FRAGMENT_PAYLOAD_SIZE - 1) / MIN_FRAGMENT_PAYLOAD_SIZE;
+
+    // 类型字节中表示消息经过压缩的标志位
+    private static final int FLAG_COMPRESSED = 0x80;
+
+    // 压缩消息解压后的最大字节数
+    private static final int MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    // Deflate 的最大压缩比。每个长度为 258 的匹配至少占 2 位，解压后的长度不会超过压缩数据长度的 1032 倍
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    // 压缩与解压使用的预设字典
+    private static final byte[] DICTIONARY = createDictionary();
+
+    // 预设字典的 Adler-32 校验和，压缩数据要求的字典与它不一致时数据无效
+    private static final long DICTIONARY_ADLER = dictionaryAdler();
+
+    // 每个线程复用的压缩器与解压器
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    // 每个线程编码时复用的名称表
+    private static final ThreadLocal<NodeIdTable> ENCODE_TABLES = ThreadLocal.withInitial(NodeIdTable::new);
+
+    // 每个线程从直接缓冲区解码名称时复用的字节数组，放不下时换成更大的
+    private static final ThreadLocal<byte[]> NAME_BUFFERS = ThreadLocal.withInitial(() -> new byte[256]);
+
+    /**
+     * 编码时使用的名称表，名称按第一次出现的顺序编号。
+     */
+    private static class NodeIdTable
+    {
+        final List<String> nodeIds = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+
+        void clear()
+        {
+            nodeIds.clear();
+            indexes.clear();
+        }
+
+        void add(String nodeId)
+        {
+            if (!indexes.containsKey(nodeId))
+            {
+                indexes.put(nodeId, nodeIds.size());
+                nodeIds.add(nodeId);
+            }
+        }
+
+        void addPaths(List<Path> paths)
+        {
+            for (Path path : paths)
+            {
+                add(path.getStartNodeId());
+                add(path.getEndNodeId());
+            }
+        }
+
+        int indexOf(String nodeId)
+        {
+            return indexes.get(nodeId);
+        }
+    }
+
+    /**
+     * 把消息编码到 buffer 当前位置。buffer 空间不够时抛出 BufferOverflowException，调用者可以换一个更大的缓冲区重新编码。
+     *
+     * @throws IllegalArgumentException 不支持的消息类型。
+     */
+    public static void encode(Object message, ByteBuffer buffer)
+    {
+        final NodeIdTable table = ENCODE_TABLES.get();
+        table.clear();
+        buffer.put(VERSION);
+        if (message instanceof HeartBeatPackage)
+        {
+            final HeartBeatPackage heartBeatPackage = (HeartBeatPackage) message;
+            table.add(heartBeatPackage.getSenderNodeId());
+
+            buffer.put(TYPE_HEART_BEAT_PACKAGE);
+            final int width = putNodeIdTable(table, buffer);
+            putIndex(buffer, width, table.indexOf(heartBeatPackage.getSenderNodeId()));
+        }
+        else if (message instanceof GraphInfo)
+        {
+            final GraphInfo info = (GraphInfo) message;
+            final List<Path> pathList = info.getPathList();
+            final List<Path> summaryList = info.getSummaryList();
+            table.add(info.getSenderId());
+            table.add(info.getAreaId());
+            table.addPaths(pathList);
+            table.addPaths(summaryList);
+
+            buffer.put(TYPE_GRAPH_INFO);
+            final int width = putNodeIdTable(table, buffer);
+            putIndex(buffer, width, table.indexOf(info.getSenderId()));
+            putIndex(buffer, width, table.indexOf(info.getAreaId()));
+            putPaths(table, buffer, width, pathList);
+            putPaths(table, buffer, width, summaryList);
+        }
+        else if (message instanceof NeighborPathInfo)
+        {
+            final NeighborPathInfo info = (NeighborPathInfo) message;
+            final List<Path> pathList = info.getPathList();
+            final List<Path> summaryList = info.getSummaryList();
+            table.add(info.getSenderNodeId());
+            table.add(info.getAreaId());
+            table.addPaths(pathList);
+            table.addPaths(summaryList);
+
+            buffer.put(TYPE_NEIGHBOR_PATH_INFO);
+            final int width = putNodeIdTable(table, buffer);
+            buffer.putLong(info.getSendTime());
+            buffer.putLong(info.getSequence());
+            buffer.putInt(info.getAge());
+            putIndex(buffer, width, table.indexOf(info.getSenderNodeId()));
+            putIndex(buffer, width, table.indexOf(info.getAreaId()));
+            putPaths(table, buffer, width, pathList);
+            putPaths(table, buffer, width, summaryList);
+        }
+        else if (message instanceof GraphDelta)
+        {
+            final GraphDelta delta = (GraphDelta) message;
+            final List<Path> pathList = delta.getPathList();
+            final List<Path> summaryList = delta.getSummaryList();
+            table.add(delta.getSenderId());
+            table.add(delta.getAreaId());
+            table.addPaths(pathList);
+            table.addPaths(summaryList);
+
+            buffer.put(TYPE_GRAPH_DELTA);
+            final int width = putNodeIdTable(table, buffer);
+            buffer.putLong(delta.getEpoch());
+            buffer.putLong(delta.getBaseSequence());
+            buffer.putLong(delta.getSequence());
+            buffer.put((byte) (delta.isFull() ? 1 : 0));
+            putIndex(buffer, width, table.indexOf(delta.getSenderId()));
+            putIndex(buffer, width, table.indexOf(delta.getAreaId()));
+            putPaths(table, buffer, width, pathList);
+            putPaths(table, buffer, width, summaryList);
+        }
+        else if (message instanceof GraphDeltaAck)
+        {
+            final GraphDeltaAck ack = (GraphDeltaAck) message;
+            table.add(ack.getSenderId());
+            table.add(ack.getAreaId());
+
+            buffer.put(TYPE_GRAPH_DELTA_ACK);
+            final int width = putNodeIdTable(table, buffer);
+            buffer.putLong(ack.getEpoch());
+            buffer.putLong(ack.getSequence());
+            putIndex(buffer, width, table.indexOf(ack.getSenderId()));
+            putIndex(buffer, width, table.indexOf(ack.getAreaId()));
+        }
+        else if (message instanceof DistanceVector)
+        {
+            final DistanceVector vector = (DistanceVector) message;
+            final List<Path> routeList = vector.getRouteList();
+            table.add(vector.getSenderId());
+            table.addPaths(routeList);
+
+            // 所有路径的起点都是发送者，只写出终点与长度
+            buffer.put(TYPE_DISTANCE_VECTOR);
+            final int width = putNodeIdTable(table, buffer);
+            putIndex(buffer, width, table.indexOf(vector.getSenderId()));
+            putVarInt(buffer, routeList.size());
+            for (Path route : routeList)
+            {
+                putIndex(buffer, width, table.indexOf(route.getEndNodeId()));
+                buffer.putDouble(route.getPathLength());
+            }
+        }
+        else if (message instanceof GraphDigest)
+        {
+            final GraphDigest digest = (GraphDigest) message;
+            final Map<String, Long> originDigests = digest.getOriginDigests();
+            table.add(digest.getSenderId());
+            table.add(digest.getAreaId());
+            for (String originId : originDigests.keySet())
+            {
+                table.add(originId);
+            }
+
+            buffer.put(TYPE_GRAPH_DIGEST);
+            final int width = putNodeIdTable(table, buffer);
+            buffer.put((byte) (digest.isRequest() ? 1 : 0));
+            buffer.putLong(digest.getPathDigest());
+            buffer.putLong(digest.getSummaryDigest());
+            putIndex(buffer, width, table.indexOf(digest.getSenderId()));
+            putIndex(buffer, width, table.indexOf(digest.getAreaId()));
+            putVarInt(buffer, originDigests.size());
+            for (Map.Entry<String, Long> entry : originDigests.entrySet())
+            {
+                putIndex(buffer, width, table.indexOf(entry.getKey()));
+                buffer.putLong(entry.getValue());
+            }
+        }
+        else if (message instanceof GraphRepair)
+        {
+            final GraphRepair repair = (GraphRepair) message;
+            final List<String> originIds = repair.getOriginIds();
+            final List<Path> pathList = repair.getPathList();
+            final List<Path> summaryList = repair.getSummaryList();
+            table.add(repair.getSenderId());
+            table.add(repair.getAreaId());
+            for (String originId : originIds)
+            {
+                table.add(originId);
+            }
+            table.addPaths(pathList);
+            if (summaryList != null)
+            {
+                table.addPaths(summaryList);
+            }
+
+            buffer.put(TYPE_GRAPH_REPAIR);
+            final int width = putNodeIdTable(table, buffer);
+            putIndex(buffer, width, table.indexOf(repair.getSenderId()));
+            putIndex(buffer, width, table.indexOf(repair.getAreaId()));
+            putVarInt(buffer, originIds.size());
+            for (String originId : originIds)
+            {
+                putIndex(buffer, width, table.indexOf(originId));
+            }
+            putPaths(table, buffer, width, pathList);
+            buffer.put((byte) (summaryList == null ? 0 : 1));
+            if (summaryList != null)
+            {
+                putPaths(table, buffer, width, summaryList);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("不支持的消息类型 " + message.getClass().getName());
+        }
+    }
+
+    /**
+     * 把多个已经编码的消息合并为一个批量数据包，写到 buffer 当前位置。buffer 空间不够时抛出 BufferOverflowException。
+     */
+    public static void encodeBatch(List<byte[]> messages, ByteBuffer buffer)
+    {
+        buffer.put(VERSION);
+        buffer.put(TYPE_MESSAGE_BATCH);
+        putVarInt(buffer, messages.size());
+        for (byte[] message : messages)
+        {
+            putVarInt(buffer, message.length);
+            buffer.put(message);
+        }
+    }
+
+    /**
+     * 把 source 中从 0 到 limit 的消息编码压缩后写到 target 当前位置。压缩结果不比原消息短时返回 false，target 的内容无效。
+     */
+    public static boolean compress(ByteBuffer source, ByteBuffer target)
+    {
+        final long startTime = System.nanoTime();
+        final int length = source.limit();
+        final int bodyLength = length - 2;
+        final Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(source.array(), source.arrayOffset() + 2, bodyLength);
+        deflater.finish();
+
+        target.put(VERSION);
+        target.put((byte) (source.get(1) | FLAG_COMPRESSED));
+        putVarInt(target, bodyLength);
+        final int available = Math.min(target.remaining(), length - 1 - target.position());
+        boolean compressed = false;
+        if (available > 0)
+        {
+            final int written = deflater.deflate(target.array(), target.arrayOffset() + target.position(), available);
+            if (deflater.finished())
+            {
+                target.position(target.position() + written);
+                compressed = true;
+            }
+        }
+        TrafficStatistics.recordCompression(length, compressed ? target.position() : length, System.nanoTime() - startTime);
+        return compressed;
+    }
+
+    /**
+     * 写出分片头部，之后由调用者写入分片内容。
+     */
+    public static void encodeFragmentHeader(int messageId, int index, int count, ByteBuffer buffer)
+    {
+        buffer.put(VERSION);
+        buffer.put(TYPE_MESSAGE_FRAGMENT);
+        buffer.putInt(messageId);
+        putVarInt(buffer, index);
+        putVarInt(buffer, count);
+    }
+
+    /**
+     * 返回 buffer 当前位置的消息解码后的类型，不移动 position，也不解码消息内容。接收线程用它选择处理器，把解码留给处理消息的线程。
+     * 压缩的消息返回原消息的类型。
+     *
+     * @throws IOException 版本号或消息类型无法识别，或者数据不完整。
+     */
+    public static Class<?> peekMessageClass(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.remaining() < 2)
+        {
+            throw new EOFException("消息数据不完整");
+        }
+        final byte version = buffer.get(buffer.position());
+        if (version != VERSION)
+        {
+            throw new IOException("不支持的协议版本 " + version);
+        }
+        final byte type = (byte) (buffer.get(buffer.position() + 1) & ~FLAG_COMPRESSED);
+        switch (type)
+        {
+            case TYPE_HEART_BEAT_PACKAGE:
+            {
+                return HeartBeatPackage.class;
+            }
+            case TYPE_GRAPH_INFO:
+            {
+                return GraphInfo.class;
+            }
+            case TYPE_NEIGHBOR_PATH_INFO:
+            {
+                return NeighborPathInfo.class;
+            }
+            case TYPE_GRAPH_DELTA:
+            {
+                return GraphDelta.class;
+            }
+            case TYPE_GRAPH_DELTA_ACK:
+            {
+                return GraphDeltaAck.class;
+            }
+            case TYPE_DISTANCE_VECTOR:
+            {
+                return DistanceVector.class;
+            }
+            case TYPE_MESSAGE_BATCH:
+            {
+                return MessageBatch.class;
+            }
+            case TYPE_MESSAGE_FRAGMENT:
+            {
+                return MessageFragment.class;
+            }
+            case TYPE_GRAPH_DIGEST:
+            {
+                return GraphDigest.class;
+            }
+            case TYPE_GRAPH_REPAIR:
+            {
+                return GraphRepair.class;
+            }
+            default:
+            {
+                throw new IOException("未知的消息类型 " + type);
+            }
+        }
+    }
+
+    /**
+     * 从 buffer 当前位置解码一个消息，读到 buffer 的 limit 为止。批量数据包解码为 MessageBatch，分片解码为 MessageFragment，压缩的消息先解压再解码。
+     *
+     * @throws IOException 版本号或消息类型无法识别，或者数据不完整。
+     */
+    public static Object decode(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            final byte version = buffer.get();
+            if (version != VERSION)
+            {
+                throw new IOException("不支持的协议版本 " + version);
+            }
+            final byte type = buffer.get();
+            if ((type & FLAG_COMPRESSED) != 0)
+            {
+                return decode(inflate(buffer, (byte) (type & ~FLAG_COMPRESSED)));
+            }
+            if (type == TYPE_MESSAGE_BATCH)
+            {
+                return decodeBatch(buffer);
+            }
+            if (type == TYPE_MESSAGE_FRAGMENT)
+            {
+                final int messageId = buffer.getInt();
+                final int index = getVarInt(buffer);
+                final int count = getVarInt(buffer);
+                if (count <= 0 || count > MAX_FRAGMENT_COUNT || index < 0 || index >= count)
+                {
+                    throw new IOException("无效的分片序号");
+                }
+                final byte[] payload = new byte[buffer.remaining()];
+                buffer.get(payload);
+                return new MessageFragment(messageId, index, count, payload);
+            }
+            final String[] nodeIds = getNodeIdTable(buffer);
+            final int width = indexWidth(nodeIds.length);
+            switch (type)
+            {
+                case TYPE_HEART_BEAT_PACKAGE:
+                {
+                    return new HeartBeatPackage(nodeIds[getIndex(buffer, width)]);
+                }
+                case TYPE_GRAPH_INFO:
+                {
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    final List<Path> pathList = getPaths(nodeIds, buffer, width);
+                    final List<Path> summaryList = getPaths(nodeIds, buffer, width);
+                    return new GraphInfo(pathList, summaryList, areaId, senderId);
+                }
+                case TYPE_NEIGHBOR_PATH_INFO:
+                {
+                    final long sendTime = buffer.getLong();
+                    final long sequence = buffer.getLong();
+                    final int age = buffer.getInt();
+                    final String senderNodeId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    final List<Path> pathList = getPaths(nodeIds, buffer, width);
+                    final List<Path> summaryList = getPaths(nodeIds, buffer, width);
+                    return new NeighborPathInfo(sendTime, senderNodeId, pathList, areaId, sequence, age, summaryList);
+                }
+                case TYPE_GRAPH_DELTA:
+                {
+                    final long epoch = buffer.getLong();
+                    final long baseSequence = buffer.getLong();
+                    final long sequence = buffer.getLong();
+                    final boolean full = buffer.get() != 0;
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    final List<Path> pathList = getPaths(nodeIds, buffer, width);
+                    final List<Path> summaryList = getPaths(nodeIds, buffer, width);
+                    return new GraphDelta(epoch, baseSequence, sequence, full, pathList, summaryList, areaId, senderId);
+                }
+                case TYPE_GRAPH_DELTA_ACK:
+                {
+                    final long epoch = buffer.getLong();
+                    final long sequence = buffer.getLong();
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    return new GraphDeltaAck(epoch, sequence, areaId, senderId);
+                }
+                case TYPE_DISTANCE_VECTOR:
+                {
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final int count = getVarInt(buffer);
+                    if (count < 0 || count > buffer.remaining())
+                    {
+                        throw new BufferUnderflowException();
+                    }
+                    final List<Path> routeList = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++)
+                    {
+                        final String destinationId = nodeIds[getIndex(buffer, width)];
+                        routeList.add(new Path(senderId, destinationId, buffer.getDouble()));
+                    }
+                    return new DistanceVector(senderId, routeList);
+                }
+                case TYPE_GRAPH_DIGEST:
+                {
+                    final boolean request = buffer.get() != 0;
+                    final long pathDigest = buffer.getLong();
+                    final long summaryDigest = buffer.getLong();
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    final int count = getVarInt(buffer);
+                    if (count < 0 || count > buffer.remaining())
+                    {
+                        throw new BufferUnderflowException();
+                    }
+                    final Map<String, Long> originDigests = new HashMap<>();
+                    for (int i = 0; i < count; i++)
+                    {
+                        final String originId = nodeIds[getIndex(buffer, width)];
+                        originDigests.put(originId, buffer.getLong());
+                    }
+                    return new GraphDigest(request, pathDigest, summaryDigest, originDigests, areaId, senderId);
+                }
+                case TYPE_GRAPH_REPAIR:
+                {
+                    final String senderId = nodeIds[getIndex(buffer, width)];
+                    final String areaId = nodeIds[getIndex(buffer, width)];
+                    final int count = getVarInt(buffer);
+                    if (count < 0 || count > buffer.remaining())
+                    {
+                        throw new BufferUnderflowException();
+                    }
+                    final List<String> originIds = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++)
+                    {
+                        originIds.add(nodeIds[getIndex(buffer, width)]);
+                    }
+                    final List<Path> pathList = getPaths(nodeIds, buffer, width);
+                    final List<Path> summaryList = buffer.get() != 0 ? getPaths(nodeIds, buffer, width) : null;
+                    return new GraphRepair(originIds, pathList, summaryList, areaId, senderId);
+                }
+                default:
+                {
+                    throw new IOException("未知的消息类型 " + type);
+                }
+            }
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e)
+        {
+            throw new EOFException("消息数据不完整");
+        }
+    }
+
+    /**
+     * 解码批量数据包中的所有消息。批量数据包中不能再包含批量数据包或分片。
+     */
+    private static MessageBatch decodeBatch(ByteBuffer buffer) throws IOException
+    {
+        final int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+        final List<Object> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final int length = getVarInt(buffer);
+            if (length < 2 || length > buffer.remaining())
+            {
+                throw new BufferUnderflowException();
+            }
+            final int end = buffer.position() + length;
+            final int nestedType = buffer.get(buffer.position() + 1) & ~FLAG_COMPRESSED;
+            if (nestedType == TYPE_MESSAGE_BATCH || nestedType == TYPE_MESSAGE_FRAGMENT)
+            {
+                throw new IOException("批量数据包中不能包含批量数据包或分片");
+            }
+            final ByteBuffer message = buffer.duplicate();
+            message.limit(end);
+            messages.add(decode(message));
+            buffer.position(end);
+        }
+        return new MessageBatch(messages);
+    }
+
+    /**
+     * 解压 buffer 中剩余的内容，返回加上版本号与类型之后的原消息编码。
+     */
+    private static ByteBuffer inflate(ByteBuffer buffer, byte type) throws IOException
+    {
+        final long startTime = System.nanoTime();
+        final int bodyLength = getVarInt(buffer);
+        // 声明的长度来自未经验证的数据包，按剩余的压缩数据能解压出的最大长度检查之后再分配，几个字节的数据包不能迫使分配很大的数组
+        if (bodyLength < 0 || bodyLength > MAX_INFLATED_SIZE || bodyLength > (long) buffer.remaining() * MAX_DEFLATE_RATIO)
+        {
+            throw new IOException("压缩消息的长度无效");
+        }
+        // 多留一个字节，压缩数据比声明的长度长时可以发现，输出写满时也能继续读取压缩数据的结尾
+        final byte[] result = new byte[bodyLength + 3];
+        result[0] = VERSION;
+        result[1] = type;
+
+        final Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        if (buffer.hasArray())
+        {
+            inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        else
+        {
+            final byte[] input = new byte[buffer.remaining()];
+            buffer.get(input);
+            inflater.setInput(input);
+        }
+        buffer.position(buffer.limit());
+        try
+        {
+            int offset = 2;
+            while (!inflater.finished())
+            {
+                final int inflated = inflater.inflate(result, offset, result.length - offset);
+                offset += inflated;
+                if (inflated == 0)
+                {
+                    if (inflater.needsDictionary())
+                    {
+                        // 压缩时使用的字典与预设字典的校验和不一致。getAdler 返回 int，按无符号数比较
+                        if ((inflater.getAdler() & 0xFFFFFFFFL) != DICTIONARY_ADLER)
+                        {
+                            throw new IOException("压缩消息数据无效");
+                        }
+                        inflater.setDictionary(DICTIONARY);
+                    }
+                    else if (inflater.needsInput() || offset == result.length)
+                    {
+                        throw new EOFException("压缩消息数据不完整");
+                    }
+                }
+            }
+            if (offset != bodyLength + 2)
+            {
+                throw new IOException("压缩消息的长度与声明的不一致");
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("压缩消息数据无效", e);
+        }
+        TrafficStatistics.recordDecompression(System.nanoTime() - startTime);
+        return ByteBuffer.wrap(result, 0, bodyLength + 2);
+    }
+
+    private static long dictionaryAdler()
+    {
+        final Adler32 adler = new Adler32();
+        adler.update(DICTIONARY);
+        return adler.getValue();
+    }
+
+    /**
+     * 预设字典为 INF 与 1 到 255 的 double 编码。Deflater 优先匹配字典末尾的内容，较小的长度更常见，放在后面。
+     */
+    private static byte[] createDictionary()
+    {
+        final ByteBuffer dictionary = ByteBuffer.allocate(8 * 256);
+        for (int length = 255; length >= 1; length--)
+        {
+            dictionary.putDouble(length);
+        }
+        dictionary.putDouble(-1);
+        return dictionary.array();
+    }
+
+    /**
+     * 写出名称表，返回之后使用的编号宽度。
+     */
+    private static int putNodeIdTable(NodeIdTable table, ByteBuffer buffer)
+    {
+        putVarInt(buffer, table.nodeIds.size());
+        for (String nodeId : table.nodeIds)
+        {
+            final byte[] bytes = nodeId.getBytes(StandardCharsets.UTF_8);
+            putVarInt(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+        return indexWidth(table.nodeIds.size());
+    }
+
+    private static String[] getNodeIdTable(ByteBuffer buffer)
+    {
+        final int count = getVarInt(buffer);
+        // 每个名称至少占一个字节，数量不可能超过剩余的字节数
+        if (count < 0 || count > buffer.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+        final String[] nodeIds = new String[count];
+        for (int i = 0; i < nodeIds.length; i++)
+        {
+            final int length = getVarInt(buffer);
+            if (length < 0 || length > buffer.remaining())
+            {
+                throw new BufferUnderflowException();
+            }
+            if (buffer.hasArray())
+            {
+                nodeIds[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            else
+            {
+                byte[] bytes = NAME_BUFFERS.get();
+                if (bytes.length < length)
+                {
+                    bytes = new byte[Math.max(bytes.length * 2, length)];
+                    NAME_BUFFERS.set(bytes);
+                }
+                buffer.get(bytes, 0, length);
+                nodeIds[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        return nodeIds;
+    }
+
+    private static void putPaths(NodeIdTable table, ByteBuffer buffer, int width, List<Path> paths)
+    {
+        putVarInt(buffer, paths.size());
+        for (Path path : paths)
+        {
+            putIndex(buffer, width, table.indexOf(path.getStartNodeId()));
+            putIndex(buffer, width, table.indexOf(path.getEndNodeId()));
+            buffer.putDouble(path.getPathLength());
+        }
+    }
+
+    private static List<Path> getPaths(String[] nodeIds, ByteBuffer buffer, int width)
+    {
+        final int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+        final List<Path> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final String startNodeId = nodeIds[getIndex(buffer, width)];
+            final String endNodeId = nodeIds[getIndex(buffer, width)];
+            paths.add(new Path(startNodeId, endNodeId, buffer.getDouble()));
+        }
+        return paths;
+    }
+
+    /**
+     * 名称表有 size 个名称时编号使用的字节数。
+     */
+    private static int indexWidth(int size)
+    {
+        if (size <= 0xFF)
+        {
+            return 1;
+        }
+        return size <= 0xFFFF ? 2 : 4;
+    }
+
+    private static void putIndex(ByteBuffer buffer, int width, int index)
+    {
+        if (width == 1)
+        {
+            buffer.put((byte) index);
+        }
+        else if (width == 2)
+        {
+            buffer.putShort((short) index);
+        }
+        else
+        {
+            buffer.putInt(index);
+        }
+    }
+
+    private static int getIndex(ByteBuffer buffer, int width)
+    {
+        if (width == 1)
+        {
+            return buffer.get() & 0xFF;
+        }
+        else if (width == 2)
+        {
+            return buffer.getShort() & 0xFFFF;
+        }
+        return buffer.getInt();
+    }
+
+    /**
+     * 写出一个非负整数，每个字节保存 7 位，最高位表示后面还有字节。
+     */
+    private static void putVarInt(ByteBuffer buffer, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer)
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+}
@@ -0,0 +1,44 @@
+package Component.Message;
+
+/**
+ * 消息分片。编码后超过数据包最大字节数的消息被切成多个分片分别发送，接收方按 messageId 收齐所有分片后重新组合并解码。
+ */
+public class MessageFragment
+{
+    // 同一个发送者的每个被分片的消息有不同的编号
+    private final int messageId;
+
+    private final int index;
+    private final int count;
+
+    // 原消息编码从 index * 分片大小 开始的一段
+    private final byte[] payload;
+
+    public MessageFragment(int messageId, int index, int count, byte[] payload)
+    {
+        this.messageId = messageId;
+        this.index = index;
+        this.count = count;
+        this.payload = payload;
+    }
+
+    public int getMessageId()
+    {
+        return messageId;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public byte[] getPayload()
+    {
+        return payload;
+    }
+}
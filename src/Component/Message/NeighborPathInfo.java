@@ -7,6 +7,8 @@ import Component.Graph.Path;
 
 /**
  * 广播使用相邻结点路径信息对象。
+ * 在链路状态模式下它就是一条链路状态通告（LSA）：发送结点描述自己在一个区域内的所有路径与发布的汇总路径，
+ * 序号越大越新，age 为通告产生后经过的秒数。
  */
 public class NeighborPathInfo implements Serializable
 {
@@ -19,11 +21,56 @@ public class NeighborPathInfo implements Serializable
     //与该结点所有相邻的结点的路径信息。
     private final List<Path> pathList;
 
-    public NeighborPathInfo(String senderNodeId, List<Path> pathList)
+    // 路径所在的区域
+    private final String areaId;
+
+    // 通告的序号，同一个发送结点的通告只有序号更大时才会替换旧的
+    private final long sequence;
+
+    // 通告产生后经过的秒数
+    private final int age;
+
+    // 发送结点作为区域边界结点发布到这个区域的汇总路径
+    private final List<Path> summaryList;
+
+    public NeighborPathInfo(String senderNodeId, List<Path> pathList, String areaId)
+    {
+        this(System.currentTimeMillis(), senderNodeId, pathList, areaId);
+    }
+
+    /**
+     * 不是链路状态通告时以发送时间作为序号，接收者用发送结点、区域与序号识别重复收到的广播。
+     */
+    private NeighborPathInfo(long sendTime, String senderNodeId, List<Path> pathList, String areaId)
     {
-        this.sendTime = System.currentTimeMillis();
+        this(sendTime, senderNodeId, pathList, areaId, sendTime, 0, Collections.emptyList());
+    }
+
+    public NeighborPathInfo(String senderNodeId, List<Path> pathList, String areaId, long sequence, int age, List<Path> summaryList)
+    {
+        this(System.currentTimeMillis(), senderNodeId, pathList, areaId, sequence, age, summaryList);
+    }
+
+    /**
+     * 解码收到的消息时使用，保留发送时的时间戳。
+     */
+    NeighborPathInfo(long sendTime, String senderNodeId, List<Path> pathList, String areaId, long sequence, int age, List<Path> summaryList)
+    {
+        this.sendTime = sendTime;
         this.senderNodeId = senderNodeId;
         this.pathList = pathList;
+        this.areaId = areaId;
+        this.sequence = sequence;
+        this.age = age;
+        this.summaryList = summaryList;
+    }
+
+    /**
+     * 返回内容相同、age 不同的通告，转发时使用。
+     */
+    public NeighborPathInfo withAge(int age)
+    {
+        return new NeighborPathInfo(sendTime, senderNodeId, pathList, areaId, sequence, age, summaryList);
     }
 
     public String getSenderNodeId()
@@ -36,8 +83,28 @@ public class NeighborPathInfo implements Serializable
         return new ArrayList<>(pathList);
     }
 
+    public String getAreaId()
+    {
+        return areaId;
+    }
+
     public long getSendTime()
     {
         return sendTime;
     }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public int getAge()
+    {
+        return age;
+    }
+
+    public List<Path> getSummaryList()
+    {
+        return new ArrayList<>(summaryList);
+    }
 }
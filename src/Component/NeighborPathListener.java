@@ -0,0 +1,14 @@
+package Component;
+
+import Component.Graph.Path;
+
+/**
+ * 本结点到邻居结点的路径变化时的回调，心跳超时与恢复时调用。
+ */
+public interface NeighborPathListener
+{
+    /**
+     * @param path 本结点到邻居结点的路径，长度为 INF 表示断开。
+     */
+    void updateNeighborPath(Path path);
+}
@@ -9,18 +9,43 @@ import Component.Processor.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 结点对象。
  */
 public class Node
 {
+    // 一个 UDP 数据包最大不超过 64 KB，更大的消息已经被发送方分片
+    private static final int MAX_PACKET_SIZE = 64 * 1024;
+
+    // 每个接收分片在缓冲区池中的缓冲区数量，所有分片的总数也就是同时等待解码的数据包数量的上限
+    private static final int RECEIVE_BUFFERS_PER_SHARD = 64;
+
     private final String nodeId;
-    private final DatagramSocket socket;
+
+    // 绑定在同一端口上的非阻塞 UDP 通道，每个由一个线程接收
+    private final DatagramChannel[] channels;
+
+    // 发送使用的阻塞模式 UDP 通道，绑定在临时端口上。发送缓冲区满时发送线程阻塞等待，不需要轮询
+    private final DatagramChannel sendChannel;
+
+    // 接收数据包使用的直接缓冲区
+    private final DirectBufferPool receiveBuffers;
+
+    // 通过通道发送消息，发往同一邻居的消息在批量窗口内合并
+    private final Broadcaster broadcaster;
     private final Graph graph;
 
+    // 分区路由，维护各区域的拓扑并把它们合并到 graph 中
+    private final AreaRouter areaRouter;
+
     // 线程池
     private final ThreadPool pool;
 
@@ -29,6 +54,24 @@ public class Node
     private final Processor heartBeatPackageProcessor;
     private final Processor neighborPathInfoProcessor;
     private final Processor consoleInputProcessor;
+    private final Processor graphDeltaProcessor;
+
+    // 只有增量同步时才有，全量同步时为 null
+    private final Processor graphDeltaAckProcessor;
+
+    // 只有摘要同步时才有，其他时候为 null
+    private final Processor graphDigestProcessor;
+    private final Processor graphRepairProcessor;
+
+    // 依次处理批量数据包中的所有消息
+    private final Processor messageBatchProcessor = object -> processBatch((MessageBatch) object);
+
+    // 解码并处理接收缓冲区中的数据包
+    private final Processor packetProcessor = object -> processPacket((ByteBuffer) object);
+
+    // 只有距离向量路由时才有，链路状态路由时为 null
+    private final DistanceVectorRouter distanceVectorRouter;
+    private final Processor distanceVectorProcessor;
 
     // 各种定时发送器。
     private final TimingSender graphInfoSender;
@@ -38,51 +81,146 @@ public class Node
     // 所有邻居结点的端口。
     private List<Integer> neighborPorts;
 
+    // 邻居结点名称到端口的映射，编译转发表时使用。读取配置文件之后不再修改
+    private final Map<String, Integer> neighborPortsById;
+
+    // 每个区域内所有邻居结点的端口
+    private final Map<String, List<Integer>> areaNeighborPorts;
+
+    // 每个区域内所有邻居结点的路径
+    private final Map<String, List<Path>> areaNeighborPaths;
+
+    // 每个区域内所有邻居结点的名称
+    private final Map<String, List<String>> areaNeighborIds;
 
-    public Node(String nodeId, int port, java.nio.file.Path neighborConfigFilePath, long heartBeatSendInterval, long graphInfoSendInterval, long printInterval) throws IOException
+
+    public Node(String nodeId, int port, java.nio.file.Path neighborConfigFilePath, NodeConfig config) throws IOException
     {
+        final long heartBeatSendInterval = config.getHeartBeatSendInterval();
+        final long graphInfoSendInterval = config.getGraphInfoSendInterval();
+        final long printInterval = config.getPrintInterval();
+
         System.out.printf("结点 %s 开始运行\n", nodeId);
         this.nodeId = nodeId;
-        this.socket = new DatagramSocket(port);
-        this.graph = new Graph(nodeId);
+        this.channels = openChannels(port, config.getReceiveShards(), config.getReceiveBufferSize());
+        TrafficStatistics.setReceiveShardCount(channels.length);
+        this.receiveBuffers = new DirectBufferPool(RECEIVE_BUFFERS_PER_SHARD * channels.length, MAX_PACKET_SIZE);
+        this.sendChannel = DatagramChannel.open();
+        this.broadcaster = new Broadcaster(sendChannel, config.getSendBatchWindow(), config.getMaxDatagramSize(), config.getCompressionThreshold());
+        this.graph = new Graph(nodeId, config.getGraphStorageMode());
+        // 本结点到其他结点的最短路径随路径变化增量更新
+        graph.enableIncrementalShortestPaths(nodeId);
+        this.areaRouter = new AreaRouter(nodeId, graph, config.getGraphStorageMode(), config.getSpfInitialDelay(), config.getSpfHoldTime(), config.getSpfMaxHoldTime());
 
         this.pool = new ThreadPool(15, 50);
         this.neighborPorts = new ArrayList<>();
+        this.neighborPortsById = new HashMap<>();
+        this.areaNeighborPorts = new TreeMap<>();
+        this.areaNeighborPaths = new TreeMap<>();
+        this.areaNeighborIds = new TreeMap<>();
+
+        // 路径信息定时发送器的发送间隔。这里对设定的时间进行了 25% 上下的浮动以防止路由信息更新无法扩散
+        final long jitteredGraphInfoSendInterval = graphInfoSendInterval + Math.round((Math.random() - 0.5) * 0.5 * graphInfoSendInterval);
+
+        // 链路状态模式下自己的路径由链路状态数据库写入区域拓扑，需要在读取配置文件之前注册
+        final LinkStateRouter linkStateRouter;
+        if (config.getRoutingMode() == RoutingMode.DISTANCE_VECTOR)
+        {
+            this.distanceVectorRouter = new DistanceVectorRouter(nodeId, broadcaster, neighborPortsById, jitteredGraphInfoSendInterval, config.getDistanceVectorInfinity(), config.getFloodInitialDelay(), config.getFloodHoldTime(), config.getFloodMaxHoldTime());
+            this.distanceVectorProcessor = new DistanceVectorProcessor(distanceVectorRouter);
+            linkStateRouter = null;
+        }
+        else
+        {
+            this.distanceVectorRouter = null;
+            this.distanceVectorProcessor = null;
+            if (config.getTopologySyncMode() == TopologySyncMode.LSA)
+            {
+                linkStateRouter = new LinkStateRouter(nodeId, areaRouter, broadcaster, areaNeighborPorts, neighborPortsById, config.getLsaRefreshInterval(), config.getLsaMaxAge(), config.getFloodInitialDelay(), config.getFloodHoldTime(), config.getFloodMaxHoldTime());
+                areaRouter.setOwnStateListener(linkStateRouter);
+            }
+            else
+            {
+                linkStateRouter = null;
+            }
+        }
 
         List<Path> neighborPaths = readConfigFile(neighborConfigFilePath);
+        // 邻居的地址只解析一次
+        broadcaster.addNeighborPorts(neighborPortsById.values());
 
-        this.graphInfoProcessor = new GraphInfoProcessor(graph, nodeId);
-        this.heartBeatPackageProcessor = new HeartBeatPackageProcessor(nodeId, graph, neighborPaths, heartBeatSendInterval);
-        this.neighborPathInfoProcessor = new NeighborPathInfoProcessor(graph, socket);
-        this.consoleInputProcessor = new ConsoleInputProcessor(graph, nodeId);
+        final GraphInfoProcessor infoProcessor = new GraphInfoProcessor(areaRouter, nodeId);
+        this.graphInfoProcessor = infoProcessor;
+        this.heartBeatPackageProcessor = new HeartBeatPackageProcessor(nodeId, distanceVectorRouter == null ? areaRouter : distanceVectorRouter, neighborPaths, heartBeatSendInterval, config.getFailureDetectorThreshold());
+        this.neighborPathInfoProcessor = linkStateRouter == null ? new NeighborPathInfoProcessor(areaRouter, broadcaster) : new LinkStateProcessor(linkStateRouter);
+        this.consoleInputProcessor = new ConsoleInputProcessor(graph, nodeId, port, neighborPortsById, distanceVectorRouter);
+        this.graphDeltaProcessor = new GraphDeltaProcessor(nodeId, broadcaster, neighborPortsById, graphInfoProcessor);
 
-        // 把自己以及邻居结点路径信息广播到所有邻居结点
-        Broadcaster.broadcast(new NeighborPathInfo(nodeId, neighborPaths), socket, neighborPorts);
+        // 把自己以及邻居结点路径信息广播到所有邻居结点，每个区域的路径只发给该区域内的邻居。链路状态模式下已经在添加路径时发布了通告
+        if (linkStateRouter == null && distanceVectorRouter == null)
+        {
+            for (Map.Entry<String, List<Path>> entry : areaNeighborPaths.entrySet())
+            {
+                broadcaster.broadcast(new NeighborPathInfo(nodeId, entry.getValue(), entry.getKey()), areaNeighborPorts.get(entry.getKey()));
+            }
+        }
 
-        // 路径信息定时发送器。这里对设定的时间进行了 25% 上下的浮动以防止路由信息更新无法扩散
-        this.graphInfoSender = new GraphInfoSender(nodeId, graph, socket, neighborPorts, graphInfoSendInterval + Math.round((Math.random() - 0.5) * 0.5 * graphInfoSendInterval));
+        final boolean digestSync = linkStateRouter == null && distanceVectorRouter == null && config.getTopologySyncMode() == TopologySyncMode.DIGEST;
+        this.graphDigestProcessor = digestSync ? new GraphDigestProcessor(nodeId, areaRouter, broadcaster, neighborPortsById) : null;
+        this.graphRepairProcessor = digestSync ? new GraphRepairProcessor(infoProcessor) : null;
 
-        this.heartBeatPackageSender = new HeartBeatPackageSender(nodeId, socket, neighborPorts, heartBeatSendInterval);
+        // 路径信息定时发送器
+        if (distanceVectorRouter != null)
+        {
+            this.graphInfoSender = distanceVectorRouter;
+            this.graphDeltaAckProcessor = null;
+        }
+        else if (linkStateRouter != null)
+        {
+            this.graphInfoSender = linkStateRouter;
+            this.graphDeltaAckProcessor = null;
+        }
+        else if (config.getTopologySyncMode() == TopologySyncMode.DELTA)
+        {
+            final GraphDeltaSender graphDeltaSender = new GraphDeltaSender(nodeId, areaRouter, broadcaster, areaNeighborIds, neighborPortsById, jitteredGraphInfoSendInterval);
+            this.graphInfoSender = graphDeltaSender;
+            this.graphDeltaAckProcessor = new GraphDeltaAckProcessor(graphDeltaSender);
+        }
+        else if (digestSync)
+        {
+            this.graphInfoSender = new GraphDigestSender(nodeId, areaRouter, broadcaster, areaNeighborPorts, jitteredGraphInfoSendInterval);
+            this.graphDeltaAckProcessor = null;
+        }
+        else
+        {
+            this.graphInfoSender = new GraphInfoSender(nodeId, areaRouter, broadcaster, areaNeighborPorts, jitteredGraphInfoSendInterval);
+            this.graphDeltaAckProcessor = null;
+        }
+
+        this.heartBeatPackageSender = new HeartBeatPackageSender(nodeId, broadcaster, neighborPorts, heartBeatSendInterval);
 
         graphInfoSender.start();
         heartBeatPackageSender.start();
 
         pool.createThread(System.in, consoleInputProcessor);
 
-        // 每隔一段时间输出一次最短路径信息
-        new Timer(true).schedule(new TimerTask()
+        // 每隔一段时间输出一次最短路径信息。可能需要计算最短路径，在公共的 ForkJoinPool 中执行，不推迟时间轮中的其他任务
+        TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(() ->
         {
-            @Override
-            public void run()
+            if (distanceVectorRouter != null)
             {
-                graph.printShortestPaths(nodeId);
+                distanceVectorRouter.printRoutes();
+                return;
             }
-        }, printInterval, printInterval);
+            graph.printShortestPaths(nodeId);
+            areaRouter.pruneUnreachableNodes();
+        }), printInterval, printInterval);
     }
 
 
     /**
      * 读取配置文件，并在图中添加相邻结点信息。
+     * 每行依次为邻居名称、路径长度、邻居端口，可选的第四列为这条路径所在的区域，不写时为骨干区域。距离向量路由不分区域，忽略第四列。
      *
      * @return 文件所写的相邻结点信息。
      */
@@ -104,10 +242,24 @@ public class Node
             {
                 line = scanner.nextLine();
                 lineParts = line.split(" ");
-                neighborPaths.add(new Path(nodeId, lineParts[0], Integer.parseInt(lineParts[1])));
-                neighborPorts.add(Integer.parseInt(lineParts[2]));
+                final Path path = new Path(nodeId, lineParts[0], Integer.parseInt(lineParts[1]));
+                final int port = Integer.parseInt(lineParts[2]);
+                final String areaId = lineParts.length > 3 ? lineParts[3] : AreaRouter.BACKBONE_AREA;
+                neighborPaths.add(path);
+                neighborPorts.add(port);
+                neighborPortsById.put(lineParts[0], port);
+                areaNeighborPaths.computeIfAbsent(areaId, key -> new ArrayList<>()).add(path);
+                areaNeighborPorts.computeIfAbsent(areaId, key -> new ArrayList<>()).add(port);
+                areaNeighborIds.computeIfAbsent(areaId, key -> new ArrayList<>()).add(lineParts[0]);
+            }
+            if (distanceVectorRouter == null)
+            {
+                areaRouter.addNeighborPaths(areaNeighborPaths);
+            }
+            else
+            {
+                distanceVectorRouter.addNeighborPaths(neighborPaths);
             }
-            graph.updatePaths(neighborPaths);
             return neighborPaths;
         }
         catch (Exception e)
@@ -117,38 +269,264 @@ public class Node
     }
 
     /**
-     * 开始监听 UDP 端口，并根据收到的包类型分配对应的处理器。
+     * 获取本结点当前的转发表。拓扑没有变化时返回缓存的转发表，不需要加锁。
+     */
+    public ForwardingTable getForwardingTable()
+    {
+        return graph.getForwardingTable(nodeId, neighborPortsById);
+    }
+
+    /**
+     * 返回消息类型对应的处理器，没有对应的处理器时返回 null。
+     */
+    private Processor getProcessor(Class<?> messageClass)
+    {
+        if (messageClass == GraphInfo.class)
+        {
+            return graphInfoProcessor;
+        }
+        else if (messageClass == HeartBeatPackage.class)
+        {
+            return heartBeatPackageProcessor;
+        }
+        else if (messageClass == NeighborPathInfo.class)
+        {
+            return neighborPathInfoProcessor;
+        }
+        else if (messageClass == GraphDelta.class)
+        {
+            return graphDeltaProcessor;
+        }
+        else if (messageClass == GraphDeltaAck.class)
+        {
+            return graphDeltaAckProcessor;
+        }
+        else if (messageClass == DistanceVector.class)
+        {
+            return distanceVectorProcessor;
+        }
+        else if (messageClass == GraphDigest.class)
+        {
+            return graphDigestProcessor;
+        }
+        else if (messageClass == GraphRepair.class)
+        {
+            return graphRepairProcessor;
+        }
+        return null;
+    }
+
+    /**
+     * 依次处理批量数据包中的消息。一个消息处理出错不影响其他消息。
+     */
+    private void processBatch(MessageBatch batch)
+    {
+        for (Object message : batch.getMessages())
+        {
+            final Processor processor = getProcessor(message.getClass());
+            if (processor == null)
+            {
+                continue;
+            }
+            try
+            {
+                processor.process(message);
+            }
+            catch (Exception e)
+            {
+                System.err.println("批量数据包中的消息处理时发生错误");
+                System.err.println(e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * 在 port 上打开 shardCount 个接收通道。分片多于一个时以 SO_REUSEPORT 绑定，内核按发送方的地址与端口把数据包分配到其中一个，
+     * 同一个邻居的数据包（包括一个消息的所有分片）总是到达同一个通道，每个通道可以独立地重组分片。系统不支持 SO_REUSEPORT 时只打开一个。
+     */
+    private static DatagramChannel[] openChannels(int port, int shardCount, int receiveBufferSize) throws IOException
+    {
+        final DatagramChannel first = DatagramChannel.open();
+        if (shardCount > 1 && !first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+        {
+            System.out.println("警告：系统不支持 SO_REUSEPORT，只使用一个接收线程");
+            shardCount = 1;
+        }
+        final DatagramChannel[] channels = new DatagramChannel[shardCount];
+        for (int shard = 0; shard < shardCount; shard++)
+        {
+            final DatagramChannel channel = shard == 0 ? first : DatagramChannel.open();
+            if (shardCount > 1)
+            {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            // 分片的消息一次到达很多数据包，接收缓冲区太小时会在接收线程读取之前被丢弃
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channels[shard] = channel;
+        }
+        return channels;
+    }
+
+    /**
+     * 开始监听 UDP 端口，并根据收到的包类型分配对应的处理器。第一个接收分片在当前线程中接收，其他分片各启动一个线程。
      */
     public void listen() throws IOException
     {
-        byte[] packetBuffer = new byte[1024 * 1024];
-        DatagramPacket packet = new DatagramPacket(packetBuffer, 0, packetBuffer.length);
-        Object objectReceived;
+        for (int shard = 1; shard < channels.length; shard++)
+        {
+            final int index = shard;
+            final Thread receiver = new Thread(() ->
+            {
+                try
+                {
+                    receive(index);
+                }
+                catch (IOException e)
+                {
+                    System.err.printf("接收分片 %d 出现错误\n", index);
+                    System.err.println(e.getLocalizedMessage());
+                }
+            }, "Receiver-" + shard);
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+        receive(0);
+    }
+
+    /**
+     * 接收一个分片的数据包。
+     * 通道为非阻塞模式，由 Selector 等待数据到达，之后读出所有已经到达的数据包。每个数据包读入池中的一个直接缓冲区，
+     * 接收线程只读取消息类型选择处理器，缓冲区直接交给处理线程解码，解码之后归还，接收路径上不复制数据包，也不为每个数据包分配堆内存。
+     */
+    private void receive(int shard) throws IOException
+    {
+        final DatagramChannel channel = channels[shard];
+        final Selector selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        // 只在这个线程中使用
+        final Reassembler reassembler = new Reassembler();
 
         while (true)
         {
-            socket.receive(packet);
-            try
+            selector.select();
+            selector.selectedKeys().clear();
+            while (true)
             {
-                objectReceived = Converter.byteArrayToObject(Arrays.copyOfRange(packetBuffer, packet.getOffset(), packet.getOffset() + packet.getLength()));
-                if (objectReceived instanceof GraphInfo)
+                final ByteBuffer buffer = acquireReceiveBuffer();
+                final SocketAddress source = channel.receive(buffer);
+                if (source == null)
                 {
-                    pool.createThread(objectReceived, graphInfoProcessor);
+                    receiveBuffers.release(buffer);
+                    break;
                 }
-                else if (objectReceived instanceof HeartBeatPackage)
+                buffer.flip();
+                TrafficStatistics.recordReceived(shard, buffer.remaining());
+                if (!dispatch(buffer, ((InetSocketAddress) source).getPort(), reassembler))
                 {
-                    pool.createThread(objectReceived, heartBeatPackageProcessor);
+                    TrafficStatistics.recordReceiveDropped(shard);
                 }
-                else if (objectReceived instanceof NeighborPathInfo)
+            }
+        }
+    }
+
+    private ByteBuffer acquireReceiveBuffer() throws InterruptedIOException
+    {
+        try
+        {
+            return receiveBuffers.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待接收缓冲区时被中断");
+        }
+    }
+
+    /**
+     * 根据数据包中的消息类型把它交给线程池处理，没有对应处理器的消息直接丢弃。
+     * 分片由 Reassembler 在接收线程中组合，收齐后解码为完整的消息再交给线程池。缓冲区没有交给处理线程时在这里归还。
+     *
+     * @return 数据无效、解码失败或者线程池已满而丢弃了数据包时返回 false。
+     */
+    private boolean dispatch(ByteBuffer buffer, int sourcePort, Reassembler reassembler)
+    {
+        boolean dispatched = false;
+        try
+        {
+            final Class<?> messageClass = MessageCodec.peekMessageClass(buffer);
+            if (messageClass == MessageFragment.class)
+            {
+                final byte[] message = reassembler.add(sourcePort, (MessageFragment) Converter.byteBufferToObject(buffer));
+                if (message == null)
+                {
+                    return true;
+                }
+                final Object objectReceived = Converter.byteArrayToObject(message);
+                if (objectReceived instanceof MessageFragment)
+                {
+                    throw new IOException("分片中不能包含分片");
+                }
+                if (objectReceived instanceof MessageBatch)
                 {
-                    pool.createThread(objectReceived, neighborPathInfoProcessor);
+                    return pool.createThread(objectReceived, messageBatchProcessor);
                 }
+                final Processor processor = getProcessor(objectReceived.getClass());
+                return processor == null || pool.createThread(objectReceived, processor);
             }
-            catch (ClassNotFoundException | EOFException e)
+            // 批量数据包在一个线程中依次处理其中的消息，与单独的数据包占用相同数量的线程
+            if (messageClass == MessageBatch.class || getProcessor(messageClass) != null)
             {
-                System.err.println("端口收到无效数据");
-                System.err.println(e.getLocalizedMessage());
+                dispatched = pool.createThread(buffer, packetProcessor);
+                return dispatched;
             }
+            return true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // 在接收线程中解码，解码器的任何异常都只丢弃这个数据包，不能结束接收线程
+            System.err.println("端口收到无效数据");
+            System.err.println(e.getLocalizedMessage());
+            return false;
+        }
+        finally
+        {
+            if (!dispatched)
+            {
+                receiveBuffers.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * 在处理线程中从接收缓冲区解码消息，归还缓冲区之后再处理，处理耗时的消息不占用缓冲区。
+     */
+    private void processPacket(ByteBuffer buffer) throws Exception
+    {
+        final Object objectReceived;
+        try
+        {
+            objectReceived = Converter.byteBufferToObject(buffer);
+        }
+        catch (IOException e)
+        {
+            System.err.println("端口收到无效数据");
+            System.err.println(e.getLocalizedMessage());
+            return;
+        }
+        finally
+        {
+            receiveBuffers.release(buffer);
+        }
+
+        if (objectReceived instanceof MessageBatch)
+        {
+            processBatch((MessageBatch) objectReceived);
+        }
+        else
+        {
+            getProcessor(objectReceived.getClass()).process(objectReceived);
         }
     }
 }
@@ -0,0 +1,199 @@
+package Component;
+
+import Component.Graph.GraphStorageMode;
+
+import java.util.Properties;
+
+/**
+ * 结点的运行配置，从 config.conf 读取。没有写出的可选项使用默认值。
+ */
+public class NodeConfig
+{
+    // 心跳包的发送间隔，单位为毫秒
+    private final long heartBeatSendInterval;
+
+    // 路径信息的发送间隔，单位为毫秒
+    private final long graphInfoSendInterval;
+
+    // 故障检测器的 phi 超过这个值时判断邻居故障
+    private final double failureDetectorThreshold;
+
+    // 最短路径的输出间隔，单位为毫秒
+    private final long printInterval;
+
+    // 发往同一邻居的消息合并发送的窗口，单位为毫秒，为 0 时不合并
+    private final long sendBatchWindow;
+
+    // 一个数据包的最大字节数，更大的消息分片发送。默认值为以太网 MTU 减去 IP 与 UDP 头部
+    private final int maxDatagramSize;
+
+    // 编码后超过这个字节数的消息压缩发送，单位为字节，为 0 时不压缩
+    private final int compressionThreshold;
+
+    // 接收分片的数量。大于 1 时以 SO_REUSEPORT 在同一端口打开这么多个 socket，每个由一个线程接收
+    private final int receiveShards;
+
+    // 每个接收 socket 的接收缓冲区大小，单位为字节
+    private final int receiveBufferSize;
+
+    // 图的存储方式
+    private final GraphStorageMode graphStorageMode;
+
+    // 路由协议
+    private final RoutingMode routingMode;
+
+    // 结点之间同步拓扑的方式，只用于链路状态路由
+    private final TopologySyncMode topologySyncMode;
+
+    // 链路状态通告的重新发布间隔，单位为毫秒
+    private final long lsaRefreshInterval;
+
+    // 链路状态通告的最大存活时间，单位为秒
+    private final int lsaMaxAge;
+
+    // 距离向量路由中视为不可到达的长度
+    private final double distanceVectorInfinity;
+
+    // 路由计算的节流：安静时第一次变化的延迟、最短与最长的保持时间，单位为毫秒
+    private final long spfInitialDelay;
+    private final long spfHoldTime;
+    private final long spfMaxHoldTime;
+
+    // 触发的通告（链路状态通告、距离向量的触发更新）的节流，含义与单位同上
+    private final long floodInitialDelay;
+    private final long floodHoldTime;
+    private final long floodMaxHoldTime;
+
+    /**
+     * @param properties config.conf 的内容。
+     */
+    public NodeConfig(Properties properties)
+    {
+        this.heartBeatSendInterval = (long) Double.parseDouble(properties.getProperty("heartBeatSendInterval"));
+        this.graphInfoSendInterval = (long) (Double.parseDouble(properties.getProperty("graphInfoSendInterval")) * 1000);
+        this.failureDetectorThreshold = Double.parseDouble(properties.getProperty("failureDetectorThreshold", "8"));
+        this.printInterval = (long) (Double.parseDouble(properties.getProperty("printInterval")) * 1000);
+        this.sendBatchWindow = (long) Double.parseDouble(properties.getProperty("sendBatchWindow", "10"));
+        this.maxDatagramSize = Integer.parseInt(properties.getProperty("maxDatagramSize", "1472").trim());
+        this.compressionThreshold = Integer.parseInt(properties.getProperty("compressionThreshold", "0").trim());
+        this.receiveShards = Math.max(1, Integer.parseInt(properties.getProperty("receiveShards", "1").trim()));
+        this.receiveBufferSize = Integer.parseInt(properties.getProperty("receiveBufferSize", "4194304").trim());
+        this.graphStorageMode = GraphStorageMode.valueOf(properties.getProperty("graphStorage", "auto").trim().toUpperCase());
+        this.routingMode = RoutingMode.valueOf(properties.getProperty("routingMode", "link_state").trim().toUpperCase().replace('-', '_'));
+        this.topologySyncMode = TopologySyncMode.valueOf(properties.getProperty("topologySync", "full").trim().toUpperCase());
+        this.lsaRefreshInterval = (long) (Double.parseDouble(properties.getProperty("lsaRefreshInterval", "10")) * 1000);
+        this.lsaMaxAge = Integer.parseInt(properties.getProperty("lsaMaxAge", "60").trim());
+        this.distanceVectorInfinity = Double.parseDouble(properties.getProperty("distanceVectorInfinity", "256"));
+        this.spfInitialDelay = (long) Double.parseDouble(properties.getProperty("spfInitialDelay", "50"));
+        this.spfHoldTime = (long) Double.parseDouble(properties.getProperty("spfHoldTime", "200"));
+        this.spfMaxHoldTime = (long) Double.parseDouble(properties.getProperty("spfMaxHoldTime", "2000"));
+        this.floodInitialDelay = (long) Double.parseDouble(properties.getProperty("floodInitialDelay", "0"));
+        this.floodHoldTime = (long) Double.parseDouble(properties.getProperty("floodHoldTime", "100"));
+        this.floodMaxHoldTime = (long) Double.parseDouble(properties.getProperty("floodMaxHoldTime", "2000"));
+    }
+
+    public long getHeartBeatSendInterval()
+    {
+        return heartBeatSendInterval;
+    }
+
+    public long getGraphInfoSendInterval()
+    {
+        return graphInfoSendInterval;
+    }
+
+    public double getFailureDetectorThreshold()
+    {
+        return failureDetectorThreshold;
+    }
+
+    public long getPrintInterval()
+    {
+        return printInterval;
+    }
+
+    public long getSendBatchWindow()
+    {
+        return sendBatchWindow;
+    }
+
+    public int getMaxDatagramSize()
+    {
+        return maxDatagramSize;
+    }
+
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    public int getReceiveShards()
+    {
+        return receiveShards;
+    }
+
+    public int getReceiveBufferSize()
+    {
+        return receiveBufferSize;
+    }
+
+    public GraphStorageMode getGraphStorageMode()
+    {
+        return graphStorageMode;
+    }
+
+    public RoutingMode getRoutingMode()
+    {
+        return routingMode;
+    }
+
+    public TopologySyncMode getTopologySyncMode()
+    {
+        return topologySyncMode;
+    }
+
+    public long getLsaRefreshInterval()
+    {
+        return lsaRefreshInterval;
+    }
+
+    public int getLsaMaxAge()
+    {
+        return lsaMaxAge;
+    }
+
+    public double getDistanceVectorInfinity()
+    {
+        return distanceVectorInfinity;
+    }
+
+    public long getSpfInitialDelay()
+    {
+        return spfInitialDelay;
+    }
+
+    public long getSpfHoldTime()
+    {
+        return spfHoldTime;
+    }
+
+    public long getSpfMaxHoldTime()
+    {
+        return spfMaxHoldTime;
+    }
+
+    public long getFloodInitialDelay()
+    {
+        return floodInitialDelay;
+    }
+
+    public long getFloodHoldTime()
+    {
+        return floodHoldTime;
+    }
+
+    public long getFloodMaxHoldTime()
+    {
+        return floodMaxHoldTime;
+    }
+}
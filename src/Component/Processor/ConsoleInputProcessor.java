@@ -1,20 +1,44 @@
 package Component.Processor;
 
+import Component.DistanceVectorRouter;
+import Component.Graph.AllPairsResult;
+import Component.Graph.ForwardingTable;
 import Component.Graph.Graph;
 import Component.ThreadPool.Processor;
 
+import util.TrafficStatistics;
+import util.UdpSocketStatistics;
+
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class ConsoleInputProcessor implements Processor
 {
+    // allpairs 命令最多逐行输出的结点数量
+    private static final int MAX_PRINT_NODES = 32;
+
     private final Graph graph;
     private final String nodeId;
 
-    public ConsoleInputProcessor(Graph graph, String nodeId)
+    // 本结点监听的端口
+    private final int port;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    // 距离向量路由，链路状态路由时为 null
+    private final DistanceVectorRouter distanceVectorRouter;
+
+    public ConsoleInputProcessor(Graph graph, String nodeId, int port, Map<String, Integer> neighborPorts, DistanceVectorRouter distanceVectorRouter)
     {
         this.graph = graph;
         this.nodeId = nodeId;
+        this.port = port;
+        this.neighborPorts = neighborPorts;
+        this.distanceVectorRouter = distanceVectorRouter;
     }
 
     public void process(Object object)
@@ -27,12 +51,187 @@ public class ConsoleInputProcessor implements Processor
             command = scanner.nextLine();
             if (command.equals("show"))
             {
-                graph.printShortestPaths(nodeId);
+                if (distanceVectorRouter == null)
+                {
+                    graph.printShortestPaths(nodeId);
+                }
+                else
+                {
+                    distanceVectorRouter.printRoutes();
+                }
+            }
+            else if (command.equals("allpairs"))
+            {
+                if (distanceVectorRouter == null)
+                {
+                    printAllPairs();
+                }
+                else
+                {
+                    System.out.println("距离向量路由不保存拓扑，无法计算所有结点之间的最短路径");
+                }
+            }
+            else if (command.startsWith("route "))
+            {
+                if (distanceVectorRouter == null)
+                {
+                    printRoute(command.substring("route ".length()).trim());
+                }
+                else
+                {
+                    printDistanceVectorRoute(command.substring("route ".length()).trim());
+                }
+            }
+            else if (command.equals("stats"))
+            {
+                printStats();
             }
             else
             {
-                System.out.println("未知命令，可输入 show 显示路由信息");
+                System.out.println("未知命令，可输入 show 显示路由信息，输入 allpairs 显示所有结点之间的最短路径，输入 route 结点名 查询到该结点的下一跳端口，输入 stats 显示流量、内存与收敛时间");
+            }
+        }
+    }
+
+    /**
+     * 在转发表中查询并输出到目标结点的下一跳端口与最短长度。
+     */
+    private void printRoute(String destinationNodeId)
+    {
+        final ForwardingTable table = graph.getForwardingTable(nodeId, neighborPorts);
+        final int destinationIndex = table == null ? -1 : table.indexOf(destinationNodeId);
+        final int port = table == null ? ForwardingTable.NO_ROUTE : table.lookup(destinationIndex);
+        if (port == ForwardingTable.LOCAL)
+        {
+            System.out.printf("%s is local\n", destinationNodeId);
+        }
+        else if (port == ForwardingTable.NO_ROUTE)
+        {
+            System.out.printf("no route to %s\n", destinationNodeId);
+        }
+        else
+        {
+            System.out.printf("route to %s via %s port %d, cost %.2f (version %d)\n", destinationNodeId,
+                    table.getNodeId(table.getNextHopIndex(destinationIndex)), port, table.getCost(destinationIndex), table.getVersion());
+        }
+    }
+
+    /**
+     * 在距离向量路由中查询并输出到目标结点的下一跳端口与最短长度。
+     */
+    private void printDistanceVectorRoute(String destinationNodeId)
+    {
+        final DistanceVectorRouter.Route route = distanceVectorRouter.getRoute(destinationNodeId);
+        if (route == null)
+        {
+            System.out.printf("no route to %s\n", destinationNodeId);
+        }
+        else if (destinationNodeId.equals(nodeId))
+        {
+            System.out.printf("%s is local\n", destinationNodeId);
+        }
+        else
+        {
+            System.out.printf("route to %s via %s port %d, cost %.2f (version %d)\n", destinationNodeId,
+                    route.getNextHopId(), neighborPorts.get(route.getNextHopId()), route.getCost(), distanceVectorRouter.getVersion());
+        }
+    }
+
+    /**
+     * 输出收发的数据包数量与字节数、已用堆内存、路由状态的大小，以及路由最后一次变化距离进程启动的时间，用来比较两种路由方式。
+     * 同时输出每个接收分片的数据包数量与丢包数量，以及内核中每个接收 socket 的丢包数量，用来调整接收分片的数量。
+     */
+    private void printStats()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        final long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        final long lastChangeTime;
+        final String state;
+        if (distanceVectorRouter == null)
+        {
+            lastChangeTime = graph.getLastChangeTime();
+            state = String.format("%d paths in topology", graph.getPathList().size());
+        }
+        else
+        {
+            lastChangeTime = distanceVectorRouter.getLastChangeTime();
+            state = String.format("%d distance vector entries", distanceVectorRouter.getStateSize());
+        }
+        System.out.printf("sent %d packets (%d bytes), received %d packets (%d bytes)\n",
+                TrafficStatistics.getSentPackets(), TrafficStatistics.getSentBytes(), TrafficStatistics.getReceivedPackets(), TrafficStatistics.getReceivedBytes());
+        final int shardCount = TrafficStatistics.getReceiveShardCount();
+        if (shardCount > 1)
+        {
+            for (int shard = 0; shard < shardCount; shard++)
+            {
+                System.out.printf("receive shard %d: %d packets (%d bytes), %d dropped\n",
+                        shard, TrafficStatistics.getShardReceivedPackets(shard), TrafficStatistics.getShardReceivedBytes(shard), TrafficStatistics.getShardDroppedPackets(shard));
+            }
+        }
+        final List<Long> kernelDrops = UdpSocketStatistics.getDrops(port);
+        if (!kernelDrops.isEmpty())
+        {
+            System.out.printf("kernel drops per socket on port %d: %s\n", port, kernelDrops);
+        }
+        System.out.printf("heap used %d KB, %s\n", usedMemory / 1024, state);
+        System.out.printf("routes last changed %d ms after start\n", lastChangeTime - startTime);
+
+        final long compressionAttempts = TrafficStatistics.getCompressionAttempts();
+        if (compressionAttempts > 0)
+        {
+            final long before = TrafficStatistics.getBytesBeforeCompression();
+            final long after = TrafficStatistics.getBytesAfterCompression();
+            System.out.printf("compressed %d messages, %d -> %d bytes (%.1f%%), %.1f us per compression\n",
+                    compressionAttempts, before, after, 100.0 * after / before, TrafficStatistics.getCompressionNanos() / 1000.0 / compressionAttempts);
+        }
+        final long decompressions = TrafficStatistics.getDecompressions();
+        if (decompressions > 0)
+        {
+            System.out.printf("decompressed %d messages, %.1f us per decompression\n", decompressions, TrafficStatistics.getDecompressionNanos() / 1000.0 / decompressions);
+        }
+    }
+
+    /**
+     * 计算并输出所有结点之间的最短长度与下一跳。结点太多时只输出计算用时。
+     */
+    private void printAllPairs()
+    {
+        final long startTime = System.nanoTime();
+        final AllPairsResult result = graph.computeAllPairs();
+        final long costTime = (System.nanoTime() - startTime) / 1000000;
+
+        int nodeCount = 0;
+        for (int i = 0; i < result.getNodeCount(); i++)
+        {
+            if (result.getNodeId(i) != null)
+            {
+                nodeCount++;
+            }
+        }
+        System.out.printf("all-pairs shortest paths of %d nodes computed in %d ms\n", nodeCount, costTime);
+        if (nodeCount > MAX_PRINT_NODES)
+        {
+            return;
+        }
+
+        for (int source = 0; source < result.getNodeCount(); source++)
+        {
+            if (result.getNodeId(source) == null)
+            {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(result.getNodeId(source)).append(':');
+            for (int destination = 0; destination < result.getNodeCount(); destination++)
+            {
+                final int nextHop = result.getNextHop(source, destination);
+                if (destination != source && nextHop != -1)
+                {
+                    line.append(String.format(" %s=%.2f(via %s)", result.getNodeId(destination), result.getDistance(source, destination), result.getNodeId(nextHop)));
+                }
             }
+            System.out.println(line);
         }
+        System.out.println();
     }
 }
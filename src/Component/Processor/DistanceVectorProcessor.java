@@ -0,0 +1,23 @@
+package Component.Processor;
+
+import Component.DistanceVectorRouter;
+import Component.Message.DistanceVector;
+import Component.ThreadPool.Processor;
+
+/**
+ * 距离向量处理器，把邻居发来的距离向量交给距离向量路由。
+ */
+public class DistanceVectorProcessor implements Processor
+{
+    private final DistanceVectorRouter distanceVectorRouter;
+
+    public DistanceVectorProcessor(DistanceVectorRouter distanceVectorRouter)
+    {
+        this.distanceVectorRouter = distanceVectorRouter;
+    }
+
+    public void process(Object object)
+    {
+        distanceVectorRouter.receive((DistanceVector) object);
+    }
+}
@@ -0,0 +1,23 @@
+package Component.Processor;
+
+import Component.Message.GraphDeltaAck;
+import Component.Sender.GraphDeltaSender;
+import Component.ThreadPool.Processor;
+
+/**
+ * 增量路径信息确认处理器，把邻居确认的序号交给发送器。
+ */
+public class GraphDeltaAckProcessor implements Processor
+{
+    private final GraphDeltaSender graphDeltaSender;
+
+    public GraphDeltaAckProcessor(GraphDeltaSender graphDeltaSender)
+    {
+        this.graphDeltaSender = graphDeltaSender;
+    }
+
+    public void process(Object object)
+    {
+        graphDeltaSender.acknowledge((GraphDeltaAck) object);
+    }
+}
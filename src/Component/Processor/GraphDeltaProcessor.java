@@ -0,0 +1,140 @@
+package Component.Processor;
+
+import Component.Graph.Graph;
+import Component.Graph.Path;
+import Component.Message.GraphDelta;
+import Component.Message.GraphDeltaAck;
+import Component.Message.GraphInfo;
+import Component.ThreadPool.Processor;
+import util.Broadcaster;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 增量路径信息处理器。
+ * 为每个发送者的每个区域保存一份它发布的全部路径，收到增量后更新这份副本并向发送者确认序号，
+ * 再把副本作为一个完整的 GraphInfo 交给 GraphInfoProcessor，路径的处理规则与全量同步时相同。
+ */
+public class GraphDeltaProcessor implements Processor
+{
+    private final String nodeId;
+
+    private final Broadcaster broadcaster;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    private final Processor graphInfoProcessor;
+
+    // 每个发送者每个区域的路径副本，键为发送者名称与区域
+    private final Map<String, Replica> replicas;
+
+    private final byte[] replicasLock = new byte[0];
+
+    /**
+     * 一个发送者在一个区域内发布的全部路径。
+     */
+    private static class Replica
+    {
+        final long epoch;
+        long sequence = -1;
+        final Map<String, Path> paths = new HashMap<>();
+        final Map<String, Path> summaries = new HashMap<>();
+
+        Replica(long epoch)
+        {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * @param graphInfoProcessor 处理还原出的完整路径信息的处理器。
+     */
+    public GraphDeltaProcessor(String nodeId, Broadcaster broadcaster, Map<String, Integer> neighborPorts, Processor graphInfoProcessor)
+    {
+        this.nodeId = nodeId;
+        this.broadcaster = broadcaster;
+        this.neighborPorts = neighborPorts;
+        this.graphInfoProcessor = graphInfoProcessor;
+        this.replicas = new HashMap<>();
+    }
+
+    public void process(Object object) throws Exception
+    {
+        GraphDelta delta = (GraphDelta) object;
+        final Integer senderPort = neighborPorts.get(delta.getSenderId());
+        if (senderPort == null)
+        {
+            return;
+        }
+
+        synchronized (replicasLock)
+        {
+            final String key = delta.getSenderId() + '\0' + delta.getAreaId();
+            Replica replica = replicas.get(key);
+            // 发送者重新启动过，之前的副本作废
+            if (replica == null || replica.epoch != delta.getEpoch())
+            {
+                replica = new Replica(delta.getEpoch());
+                replicas.put(key, replica);
+            }
+
+            if (delta.isFull())
+            {
+                replica.paths.clear();
+                replica.summaries.clear();
+                apply(replica.paths, delta.getPathList());
+                apply(replica.summaries, delta.getSummaryList());
+                replica.sequence = delta.getSequence();
+                acknowledge(delta, replica.sequence, senderPort);
+            }
+            else if (delta.getBaseSequence() == replica.sequence)
+            {
+                final List<Path> pathChanges = delta.getPathList();
+                final List<Path> summaryChanges = delta.getSummaryList();
+                apply(replica.paths, pathChanges);
+                apply(replica.summaries, summaryChanges);
+                if (replica.sequence != delta.getSequence())
+                {
+                    replica.sequence = delta.getSequence();
+                    acknowledge(delta, replica.sequence, senderPort);
+                }
+                // 副本没有变化（例如定时的序号检查），不需要重新合并到拓扑中
+                if (pathChanges.isEmpty() && summaryChanges.isEmpty())
+                {
+                    return;
+                }
+            }
+            else
+            {
+                // 副本与发送者记录的不一致，告诉发送者副本实际的序号，下次从这里开始发送
+                acknowledge(delta, replica.sequence, senderPort);
+                return;
+            }
+
+            graphInfoProcessor.process(new GraphInfo(new ArrayList<>(replica.paths.values()), new ArrayList<>(replica.summaries.values()), delta.getAreaId(), delta.getSenderId()));
+        }
+    }
+
+    private static void apply(Map<String, Path> replicaPaths, List<Path> changes)
+    {
+        for (Path path : changes)
+        {
+            final String key = path.getStartNodeId() + '\0' + path.getEndNodeId();
+            if (path.getPathLength() == Graph.INF)
+            {
+                replicaPaths.remove(key);
+            }
+            else
+            {
+                replicaPaths.put(key, path);
+            }
+        }
+    }
+
+    private void acknowledge(GraphDelta delta, long sequence, int senderPort) throws IOException
+    {
+        broadcaster.send(new GraphDeltaAck(delta.getEpoch(), sequence, delta.getAreaId(), nodeId), senderPort);
+    }
+}
@@ -0,0 +1,96 @@
+package Component.Processor;
+
+import Component.AreaRouter;
+import Component.Graph.Path;
+import Component.Graph.TopologyDigest;
+import Component.Message.GraphDigest;
+import Component.Message.GraphRepair;
+import Component.ThreadPool.Processor;
+import util.Broadcaster;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 拓扑摘要处理器。
+ * 收到邻居的摘要时与自己的比较，不同时回复按起点分组的摘要，请邻居发送不同的部分；
+ * 收到这样的请求时找出摘要不同的起点，只把这些起点的路径发给请求者，汇总路径的摘要不同时附带全部汇总路径。
+ * 双方都定时发送摘要，因此两个方向的不一致都会被对方发现。
+ */
+public class GraphDigestProcessor implements Processor
+{
+    private final String nodeId;
+
+    private final AreaRouter areaRouter;
+
+    private final Broadcaster broadcaster;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    public GraphDigestProcessor(String nodeId, AreaRouter areaRouter, Broadcaster broadcaster, Map<String, Integer> neighborPorts)
+    {
+        this.nodeId = nodeId;
+        this.areaRouter = areaRouter;
+        this.broadcaster = broadcaster;
+        this.neighborPorts = neighborPorts;
+    }
+
+    public void process(Object object) throws IOException
+    {
+        GraphDigest digest = (GraphDigest) object;
+        final Integer senderPort = neighborPorts.get(digest.getSenderId());
+        if (senderPort == null || areaRouter.getAreaGraph(digest.getAreaId()) == null)
+        {
+            return;
+        }
+        final String areaId = digest.getAreaId();
+        final List<Path> paths = areaRouter.getAreaPathList(areaId);
+        final List<Path> summaries = areaRouter.getSummaryList(areaId);
+        final long pathDigest = TopologyDigest.digest(paths);
+        final long summaryDigest = TopologyDigest.digest(summaries);
+
+        if (!digest.isRequest())
+        {
+            if (pathDigest != digest.getPathDigest() || summaryDigest != digest.getSummaryDigest())
+            {
+                broadcaster.send(new GraphDigest(true, pathDigest, summaryDigest, TopologyDigest.originDigests(paths), areaId, nodeId), senderPort);
+            }
+            return;
+        }
+
+        // 找出摘要不同的起点，包括只有一方有路径的起点
+        final Map<String, Long> originDigests = TopologyDigest.originDigests(paths);
+        final Map<String, Long> requesterDigests = digest.getOriginDigests();
+        final Set<String> originIds = new HashSet<>();
+        for (Map.Entry<String, Long> entry : originDigests.entrySet())
+        {
+            if (!entry.getValue().equals(requesterDigests.get(entry.getKey())))
+            {
+                originIds.add(entry.getKey());
+            }
+        }
+        for (String originId : requesterDigests.keySet())
+        {
+            if (!originDigests.containsKey(originId))
+            {
+                originIds.add(originId);
+            }
+        }
+        final boolean summariesDiffer = summaryDigest != digest.getSummaryDigest();
+        if (originIds.isEmpty() && !summariesDiffer)
+        {
+            return;
+        }
+
+        final List<Path> repairedPaths = new ArrayList<>();
+        for (Path path : paths)
+        {
+            if (originIds.contains(TopologyDigest.originOf(path)))
+            {
+                repairedPaths.add(path);
+            }
+        }
+        broadcaster.send(new GraphRepair(new ArrayList<>(originIds), repairedPaths, summariesDiffer ? summaries : null, areaId, nodeId), senderPort);
+    }
+}
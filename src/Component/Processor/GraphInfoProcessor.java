@@ -1,45 +1,76 @@
 package Component.Processor;
 
+import Component.AreaRouter;
 import Component.ThreadPool.Processor;
 import Component.Message.GraphInfo;
 import Component.Graph.Graph;
 import Component.Graph.Path;
+import Component.Graph.TopologyDigest;
 
 import java.util.*;
 
 public class GraphInfoProcessor implements Processor
 {
-    private final Graph graph;
+    private final AreaRouter areaRouter;
     private final String nodeId;
 
     /**
      * @param nodeId 本结点的 ID
      */
-    public GraphInfoProcessor(Graph graph, String nodeId)
+    public GraphInfoProcessor(AreaRouter areaRouter, String nodeId)
     {
         this.nodeId = nodeId;
-        this.graph = graph;
+        this.areaRouter = areaRouter;
     }
 
     /**
      * 这里的处理思想是：与自己直接连接的路径由自己负责，其他的所有路径都无条件相信邻居提供的路径信息。
+     * 路径信息只与它所在区域的拓扑比较，本结点不在这个区域时忽略。
      */
     public void process(Object object)
     {
         GraphInfo info = (GraphInfo) object;
-        List<Path> neighborPathList = info.getPathList();
-        List<Path> pathList = graph.getPathList();
+        merge(info.getAreaId(), info.getSenderId(), info.getPathList(), info.getSummaryList(), null);
+    }
+
+    /**
+     * 把邻居发来的路径合并到区域拓扑中，规则与 process 相同。
+     * 比较路径是否存在时不区分方向，两个结点的图中同一条路径的方向可能相反。
+     *
+     * @param summaryList 邻居的全部汇总路径，为 null 时不修改汇总路径。
+     * @param originIds   只比较起点（见 TopologyDigest）在这个集合中的路径，为 null 时比较全部路径。
+     */
+    public void merge(String areaId, String senderId, List<Path> neighborPathList, List<Path> summaryList, Set<String> originIds)
+    {
+        Graph areaGraph = areaRouter.getAreaGraph(areaId);
+        if (areaGraph == null)
+        {
+            return;
+        }
+        List<Path> pathList = areaGraph.getPathList();
+
+        final Set<String> neighborPathKeys = new HashSet<>();
+        for (Path path : neighborPathList)
+        {
+            neighborPathKeys.add(TopologyDigest.keyOf(path));
+        }
+
+        // 删除与添加的路径放在一起作为一批修改交给区域，区域的图与路由图都只需要发布一次快照
+        final ArrayList<Path> pathsToUpdate = new ArrayList<>();
 
         // 如果某条与自己不相连的路径在邻居结点处不存在，那么自己也删掉这条路径
         for (Path path : pathList)
         {
-            if (!neighborPathList.contains(path) && !path.getStartNodeId().equals(nodeId) && !path.getEndNodeId().equals(nodeId))
+            if (originIds != null && !originIds.contains(TopologyDigest.originOf(path)))
+            {
+                continue;
+            }
+            if (!neighborPathKeys.contains(TopologyDigest.keyOf(path)) && !path.getStartNodeId().equals(nodeId) && !path.getEndNodeId().equals(nodeId))
             {
-                graph.updatePath(new Path(path.getStartNodeId(), path.getEndNodeId(), Graph.INF));
+                pathsToUpdate.add(new Path(path.getStartNodeId(), path.getEndNodeId(), Graph.INF));
             }
         }
 
-        final ArrayList<Path> pathsToUpdate = new ArrayList<>();
         for (Path path : neighborPathList)
         {
             // 如果路径与自己完全不相连，添加这条路径
@@ -50,11 +81,11 @@ public class GraphInfoProcessor implements Processor
 
             // 如果路径与自己相连，仅当发出者就是图的另外一端时添加
             // 因为心跳包是有判断失误的概率的，如果心跳包判断结点掉线而该结点发来了路径信息，就把路径重新放回去
-            else if ((path.getStartNodeId().equals(info.getSenderId()) || path.getEndNodeId().equals(info.getSenderId())))
+            else if ((path.getStartNodeId().equals(senderId) || path.getEndNodeId().equals(senderId)))
             {
                 pathsToUpdate.add(path);
             }
         }
-        graph.updatePaths(pathsToUpdate);
+        areaRouter.updateArea(areaId, pathsToUpdate, summaryList);
     }
 }
@@ -0,0 +1,25 @@
+package Component.Processor;
+
+import Component.Message.GraphRepair;
+import Component.ThreadPool.Processor;
+
+import java.util.*;
+
+/**
+ * 拓扑修复处理器，只在修复的起点范围内把邻居的路径合并到区域拓扑中，合并规则与 GraphInfoProcessor 相同。
+ */
+public class GraphRepairProcessor implements Processor
+{
+    private final GraphInfoProcessor graphInfoProcessor;
+
+    public GraphRepairProcessor(GraphInfoProcessor graphInfoProcessor)
+    {
+        this.graphInfoProcessor = graphInfoProcessor;
+    }
+
+    public void process(Object object)
+    {
+        GraphRepair repair = (GraphRepair) object;
+        graphInfoProcessor.merge(repair.getAreaId(), repair.getSenderId(), repair.getPathList(), repair.getSummaryList(), new HashSet<>(repair.getOriginIds()));
+    }
+}
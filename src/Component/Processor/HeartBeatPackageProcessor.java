@@ -1,76 +1,141 @@
 package Component.Processor;
 
+import Component.NeighborPathListener;
 import Component.ThreadPool.Processor;
 import Component.Message.HeartBeatPackage;
 import Component.Graph.Graph;
 import Component.Graph.Path;
+import util.PhiAccrualFailureDetector;
+import util.TimingWheel;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * 心跳包处理器。每个邻居有一个 phi 累积故障检测器，根据最近的心跳到达间隔判断邻居是否故障，phi 超过阈值时断开到它的路径。
+ * 与固定的超时时间相比，心跳稳定时更早发现故障，心跳因为负载或 GC 停顿而抖动时不容易误判。
+ * 每个邻居在时间轮中有一个到期任务，安排在按当前分布 phi 会超过阈值的时间；到期时只检查这一个邻居，期间收到了心跳就按新的时间重新安排。
+ * 通知路径变化会修改拓扑并重新计算路由，检查在公共的 ForkJoinPool 中执行，不占用时间轮的线程，通知时也不持有检测器的锁。
+ */
 public class HeartBeatPackageProcessor implements Processor
 {
-    // 心跳包的的发送间隔，单位为毫秒。
-    private final long sendInterval;
+    // 每个检测器保存的到达间隔数量
+    private static final int DETECTOR_WINDOW_SIZE = 100;
 
-    // 最后收到 key 的心跳包的时间戳。
-    private final HashMap<String, Long> lastHeartBeatReceiveTime;
+    // 每个邻居的故障检测器
+    private final HashMap<String, PhiAccrualFailureDetector> failureDetectors;
 
     private final Object lastHeartBeatReceiveTimeLock = new Object();
 
-    private final Timer sendTimer;
+    // 保证路径变化按顺序通知，最后一次通知的总是邻居的最新状态
+    private final Object notifyLock = new Object();
 
-    public HeartBeatPackageProcessor(String nodeId, Graph graph, List<Path> neighborPaths, long sendInterval)
+    // phi 超过这个值时判断邻居故障
+    private final double phiThreshold;
+
+    // 邻居路径因为心跳超时或恢复而变化时通知的对象
+    private final NeighborPathListener neighborPathListener;
+
+    // 配置文件中到每个邻居的路径
+    private final HashMap<String, Path> neighborPathsById;
+
+    // 因为心跳超时而断开的邻居
+    private final HashSet<String> timedOutNodeIds;
+
+    private final String nodeId;
+
+    /**
+     * @param sendInterval 心跳包的发送间隔，单位为毫秒。
+     * @param phiThreshold phi 超过这个值时判断邻居故障。
+     */
+    public HeartBeatPackageProcessor(String nodeId, NeighborPathListener neighborPathListener, List<Path> neighborPaths, long sendInterval, double phiThreshold)
     {
-        this.sendInterval = sendInterval;
-        lastHeartBeatReceiveTime = new HashMap<>();
+        this.nodeId = nodeId;
+        this.phiThreshold = phiThreshold;
+        this.neighborPathListener = neighborPathListener;
+        failureDetectors = new HashMap<>();
+        neighborPathsById = new HashMap<>();
+        timedOutNodeIds = new HashSet<>();
+        for (Path path : neighborPaths)
+        {
+            neighborPathsById.put(path.getEndNodeId(), path);
+        }
 
         synchronized (lastHeartBeatReceiveTimeLock)
         {
             for (Path path : neighborPaths)
             {
-                lastHeartBeatReceiveTime.put(path.getEndNodeId(), System.currentTimeMillis());
+                // 标准差的下限为发送间隔的四分之一，心跳稳定时大约 2.3 个发送间隔没有收到心跳就会判断为故障
+                failureDetectors.put(path.getEndNodeId(), new PhiAccrualFailureDetector(DETECTOR_WINDOW_SIZE, sendInterval, sendInterval / 4.0, System.currentTimeMillis()));
+                scheduleExpiry(path.getEndNodeId());
             }
         }
+    }
 
-        sendTimer = new Timer(true);
-        // 定时每个 sendInterval 检查是否有结点超过三个间隔没有收到心跳包。有的话设置到对应边的长度为无穷。
-        sendTimer.schedule(new TimerTask()
-        {
-            @Override
-            public void run()
-            {
-                synchronized (lastHeartBeatReceiveTimeLock)
-                {
-                    Set<String> keys = lastHeartBeatReceiveTime.keySet();
-                    for (String key : keys)
-                    {
-                        // 如果超时，删除路径
-                        if (isTimeOut(lastHeartBeatReceiveTime.get(key), System.currentTimeMillis()))
-                        {
-                            graph.updatePath(new Path(nodeId, key, Graph.INF));
-                        }
-                    }
-                }
-            }
-        }, 0, sendInterval);
+    /**
+     * 在 phi 会超过阈值的时间检查邻居 neighborId。调用时需要持有 lastHeartBeatReceiveTimeLock。
+     */
+    private void scheduleExpiry(String neighborId)
+    {
+        final long delay = failureDetectors.get(neighborId).suspicionTime(phiThreshold) - System.currentTimeMillis();
+        TimingWheel.getInstance().schedule(() -> ForkJoinPool.commonPool().execute(() -> checkExpiry(neighborId)), Math.max(1, delay));
     }
 
-    public void process(Object object)
+    /**
+     * 检查一个邻居的 phi 值。超过阈值的设置到对应边的长度为无穷；期间收到过心跳时还没有超过，按新的时间重新安排。
+     */
+    private void checkExpiry(String neighborId)
     {
-        HeartBeatPackage heartBeatPackage = (HeartBeatPackage) object;
-        String senderNodeId = heartBeatPackage.getSenderNodeId();
         synchronized (lastHeartBeatReceiveTimeLock)
         {
-            lastHeartBeatReceiveTime.put(senderNodeId, System.currentTimeMillis());
+            if (failureDetectors.get(neighborId).phi(System.currentTimeMillis()) <= phiThreshold)
+            {
+                scheduleExpiry(neighborId);
+                return;
+            }
+            timedOutNodeIds.add(neighborId);
         }
+        notifyNeighborPath(neighborId);
     }
 
     /**
-     * 检查两个时间戳之间的间隔是否超过了三个发送间隔
+     * 按邻居当前是否超时通知它的路径。超时与恢复可能在不同线程中几乎同时发生，在 notifyLock 中读取最新的状态再通知，
+     * 先改变状态的一方即使后通知，通知的也是之后的状态，不会用旧的状态覆盖新的。
      */
-    private boolean isTimeOut(long timestamp1, long timestamp2)
+    private void notifyNeighborPath(String neighborId)
     {
-        return timestamp2 - timestamp1 > 3 * sendInterval;
+        synchronized (notifyLock)
+        {
+            final boolean timedOut;
+            synchronized (lastHeartBeatReceiveTimeLock)
+            {
+                timedOut = timedOutNodeIds.contains(neighborId);
+            }
+            neighborPathListener.updateNeighborPath(timedOut ? new Path(nodeId, neighborId, Graph.INF) : neighborPathsById.get(neighborId));
+        }
     }
 
+    public void process(Object object)
+    {
+        HeartBeatPackage heartBeatPackage = (HeartBeatPackage) object;
+        String senderNodeId = heartBeatPackage.getSenderNodeId();
+        synchronized (lastHeartBeatReceiveTimeLock)
+        {
+            final PhiAccrualFailureDetector detector = failureDetectors.get(senderNodeId);
+            if (detector == null)
+            {
+                return;
+            }
+            final long now = System.currentTimeMillis();
+            // 超时断开的邻居重新发来心跳包，立即恢复到它的路径。断开期间的间隔不计入检测器
+            if (!timedOutNodeIds.remove(senderNodeId))
+            {
+                detector.heartbeat(now);
+                return;
+            }
+            detector.restart(now);
+            scheduleExpiry(senderNodeId);
+        }
+        notifyNeighborPath(senderNodeId);
+    }
 }
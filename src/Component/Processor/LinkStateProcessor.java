@@ -0,0 +1,23 @@
+package Component.Processor;
+
+import Component.LinkStateRouter;
+import Component.Message.NeighborPathInfo;
+import Component.ThreadPool.Processor;
+
+/**
+ * 链路状态模式下的 NeighborPathInfo 处理器，把收到的通告交给链路状态数据库。
+ */
+public class LinkStateProcessor implements Processor
+{
+    private final LinkStateRouter linkStateRouter;
+
+    public LinkStateProcessor(LinkStateRouter linkStateRouter)
+    {
+        this.linkStateRouter = linkStateRouter;
+    }
+
+    public void process(Object object) throws Exception
+    {
+        linkStateRouter.receive((NeighborPathInfo) object);
+    }
+}
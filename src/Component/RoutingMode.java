@@ -0,0 +1,13 @@
+package Component;
+
+/**
+ * 路由协议。
+ */
+public enum RoutingMode
+{
+    // 每个结点保存拓扑，用 Dijkstra 计算最短路径，拓扑的同步方式由 TopologySyncMode 决定
+    LINK_STATE,
+
+    // 每个结点只保存到各目标的长度与下一跳，与邻居交换距离向量，用 Bellman-Ford 计算
+    DISTANCE_VECTOR
+}
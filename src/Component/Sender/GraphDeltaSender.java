@@ -0,0 +1,239 @@
+package Component.Sender;
+
+import Component.AreaRouter;
+import Component.Graph.Graph;
+import Component.Graph.Path;
+import Component.Message.GraphDelta;
+import Component.Message.GraphDeltaAck;
+import util.Broadcaster;
+import util.TimingWheel;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 增量路径信息发送器。
+ * 每个区域维护一份本结点发布的路径与汇总路径，以及它们的变化日志，每一条变化有一个序号。
+ * 每个发送周期只把邻居确认过的序号之后的变化发给它；邻居已经是最新时只发送一个不带路径的序号检查；
+ * 邻居落后得比日志还早，或者还从来没有确认过时，发送全部路径。
+ */
+public class GraphDeltaSender implements TimingSender
+{
+    // 日志至少保留的变化条数，超过这个数并且超过路径总数时丢弃最早的变化，落后的邻居改为接收全部路径
+    private static final int MIN_LOG_SIZE = 64;
+
+    private TimingWheel.Timeout sendTimeout;
+
+    private final AreaRouter areaRouter;
+
+    private final long sendInterval;
+
+    private final Broadcaster broadcaster;
+
+    private final String senderId;
+
+    // 本次启动的标识
+    private final long epoch;
+
+    // 每个区域内所有邻居结点的名称
+    private final Map<String, List<String>> areaNeighborIds;
+
+    // 邻居结点名称到端口的映射
+    private final Map<String, Integer> neighborPorts;
+
+    // 每个区域的变化日志
+    private final Map<String, ChangeLog> changeLogs;
+
+    // 每个区域内每个邻居确认过的序号
+    private final Map<String, Map<String, Long>> acknowledgedSequences;
+
+    private final byte[] stateLock = new byte[0];
+
+    /**
+     * 一个区域内发布的路径与它们的变化日志。
+     */
+    private static class ChangeLog
+    {
+        // 一条变化
+        private static class Change
+        {
+            final long sequence;
+            final Path path;
+            final boolean summary;
+
+            Change(long sequence, Path path, boolean summary)
+            {
+                this.sequence = sequence;
+                this.path = path;
+                this.summary = summary;
+            }
+        }
+
+        // 当前发布的路径与汇总路径，键为两端名称
+        final Map<String, Path> paths = new HashMap<>();
+        final Map<String, Path> summaries = new HashMap<>();
+
+        final ArrayDeque<Change> changes = new ArrayDeque<>();
+
+        long sequence;
+
+        // 能够发送增量的最早的确认序号
+        long oldestBaseSequence;
+
+        /**
+         * 与当前的路径比较，把变化记入日志。
+         */
+        void update(List<Path> currentPaths, List<Path> currentSummaries)
+        {
+            diff(paths, currentPaths, false);
+            diff(summaries, currentSummaries, true);
+            while (changes.size() > MIN_LOG_SIZE && changes.size() > paths.size() + summaries.size())
+            {
+                oldestBaseSequence = changes.removeFirst().sequence;
+            }
+        }
+
+        private void diff(Map<String, Path> published, List<Path> current, boolean summary)
+        {
+            final Set<String> removed = new HashSet<>(published.keySet());
+            for (Path path : current)
+            {
+                final String key = path.getStartNodeId() + '\0' + path.getEndNodeId();
+                removed.remove(key);
+                final Path old = published.put(key, path);
+                if (old == null || old.getPathLength() != path.getPathLength())
+                {
+                    changes.addLast(new Change(++sequence, path, summary));
+                }
+            }
+            for (String key : removed)
+            {
+                final Path old = published.remove(key);
+                changes.addLast(new Change(++sequence, new Path(old.getStartNodeId(), old.getEndNodeId(), Graph.INF), summary));
+            }
+        }
+
+        /**
+         * 生成从 baseSequence 到当前序号的消息。同一条路径有多次变化时只发送最后一次。
+         */
+        GraphDelta deltaSince(long epoch, long baseSequence, String areaId, String senderId)
+        {
+            if (baseSequence == sequence)
+            {
+                return new GraphDelta(epoch, sequence, sequence, false, Collections.emptyList(), Collections.emptyList(), areaId, senderId);
+            }
+            final Map<String, Path> changedPaths = new LinkedHashMap<>();
+            final Map<String, Path> changedSummaries = new LinkedHashMap<>();
+            for (Change change : changes)
+            {
+                if (change.sequence > baseSequence)
+                {
+                    final String key = change.path.getStartNodeId() + '\0' + change.path.getEndNodeId();
+                    (change.summary ? changedSummaries : changedPaths).put(key, change.path);
+                }
+            }
+            return new GraphDelta(epoch, baseSequence, sequence, false, new ArrayList<>(changedPaths.values()), new ArrayList<>(changedSummaries.values()), areaId, senderId);
+        }
+
+        GraphDelta full(long epoch, String areaId, String senderId)
+        {
+            return new GraphDelta(epoch, -1, sequence, true, new ArrayList<>(paths.values()), new ArrayList<>(summaries.values()), areaId, senderId);
+        }
+    }
+
+    /**
+     * @param areaRouter      本进程的分区路由，提供各区域要发送的路径。
+     * @param broadcaster     发送使用的发送器。
+     * @param areaNeighborIds 区域到该区域内所有邻居结点名称的映射。
+     * @param neighborPorts   邻居结点名称到端口的映射。
+     * @param sendInterval    发送路径信息的间隔。
+     */
+    public GraphDeltaSender(String nodeId, AreaRouter areaRouter, Broadcaster broadcaster, Map<String, List<String>> areaNeighborIds, Map<String, Integer> neighborPorts, long sendInterval)
+    {
+        this.senderId = nodeId;
+        this.areaRouter = areaRouter;
+        this.broadcaster = broadcaster;
+        this.areaNeighborIds = areaNeighborIds;
+        this.neighborPorts = neighborPorts;
+        this.epoch = System.currentTimeMillis();
+        this.changeLogs = new HashMap<>();
+        this.acknowledgedSequences = new HashMap<>();
+
+        this.sendInterval = sendInterval;
+    }
+
+    public void start()
+    {
+        // 编码与发送在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+        sendTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(() ->
+        {
+            try
+            {
+                sendChanges();
+            }
+            catch (IOException e)
+            {
+                System.err.println("图发送出现错误");
+                System.err.println(e.getLocalizedMessage());
+            }
+        }), 0, sendInterval);
+    }
+
+    public void stop()
+    {
+        sendTimeout.cancel();
+    }
+
+    /**
+     * 处理邻居的确认。确认的序号可以比之前的小，说明邻居重新启动过或者丢失了状态。
+     */
+    public void acknowledge(GraphDeltaAck ack)
+    {
+        if (ack.getEpoch() != epoch)
+        {
+            return;
+        }
+        synchronized (stateLock)
+        {
+            acknowledgedSequences.computeIfAbsent(ack.getAreaId(), key -> new HashMap<>()).put(ack.getSenderId(), ack.getSequence());
+        }
+    }
+
+    /**
+     * 更新每个区域的变化日志，并给每个邻居发送它缺少的变化。
+     */
+    private void sendChanges() throws IOException
+    {
+        for (Map.Entry<String, List<String>> entry : areaNeighborIds.entrySet())
+        {
+            final String areaId = entry.getKey();
+            final List<Path> currentPaths = areaRouter.getAreaPathList(areaId);
+            final List<Path> currentSummaries = areaRouter.getSummaryList(areaId);
+            final ChangeLog log;
+            synchronized (stateLock)
+            {
+                log = changeLogs.computeIfAbsent(areaId, key -> new ChangeLog());
+                log.update(currentPaths, currentSummaries);
+            }
+            for (String neighborId : entry.getValue())
+            {
+                final GraphDelta delta;
+                synchronized (stateLock)
+                {
+                    final Map<String, Long> acknowledged = acknowledgedSequences.computeIfAbsent(areaId, key -> new HashMap<>());
+                    final long baseSequence = acknowledged.getOrDefault(neighborId, -1L);
+                    if (baseSequence >= log.oldestBaseSequence && baseSequence <= log.sequence)
+                    {
+                        delta = log.deltaSince(epoch, baseSequence, areaId, senderId);
+                    }
+                    else
+                    {
+                        delta = log.full(epoch, areaId, senderId);
+                    }
+                }
+                broadcaster.send(delta, neighborPorts.get(neighborId));
+            }
+        }
+    }
+}
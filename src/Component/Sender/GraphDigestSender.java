@@ -0,0 +1,76 @@
+package Component.Sender;
+
+import Component.AreaRouter;
+import Component.Graph.TopologyDigest;
+import Component.Message.GraphDigest;
+import util.Broadcaster;
+import util.TimingWheel;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 拓扑摘要发送器，定时把每个区域的拓扑摘要发给该区域内的邻居。
+ * 摘要只有两个 64 位的值，拓扑一致时每个周期每个邻居只需要一个很小的数据包；不一致时由 GraphDigestProcessor 只交换不同的部分。
+ * 数据包丢失造成的不一致会在之后的周期中被发现并修复。
+ */
+public class GraphDigestSender implements TimingSender
+{
+    private TimingWheel.Timeout sendTimeout;
+
+    private final AreaRouter areaRouter;
+
+    private final long sendInterval;
+
+    private final Broadcaster broadcaster;
+
+    // 每个区域内所有邻居结点的端口
+    private final Map<String, List<Integer>> areaNeighborPorts;
+
+    private final String senderId;
+
+    /**
+     * @param areaRouter        本进程的分区路由，提供各区域的路径。
+     * @param broadcaster       发送使用的发送器。
+     * @param areaNeighborPorts 区域到该区域内所有邻居结点端口号的映射。
+     * @param sendInterval      发送摘要的间隔。
+     */
+    public GraphDigestSender(String nodeId, AreaRouter areaRouter, Broadcaster broadcaster, Map<String, List<Integer>> areaNeighborPorts, long sendInterval)
+    {
+        this.senderId = nodeId;
+        this.areaRouter = areaRouter;
+        this.broadcaster = broadcaster;
+        this.areaNeighborPorts = areaNeighborPorts;
+
+        this.sendInterval = sendInterval;
+    }
+
+    public void start()
+    {
+        // 计算摘要需要遍历区域内的所有路径，在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+        sendTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(() ->
+        {
+            try
+            {
+                for (Map.Entry<String, List<Integer>> entry : areaNeighborPorts.entrySet())
+                {
+                    final String areaId = entry.getKey();
+                    final long pathDigest = TopologyDigest.digest(areaRouter.getAreaPathList(areaId));
+                    final long summaryDigest = TopologyDigest.digest(areaRouter.getSummaryList(areaId));
+                    broadcaster.broadcast(new GraphDigest(false, pathDigest, summaryDigest, Collections.emptyMap(), areaId, senderId), entry.getValue());
+                }
+            }
+            catch (IOException e)
+            {
+                System.err.println("拓扑摘要发送出现错误");
+                System.err.println(e.getLocalizedMessage());
+            }
+        }), 0, sendInterval);
+    }
+
+    public void stop()
+    {
+        sendTimeout.cancel();
+    }
+}
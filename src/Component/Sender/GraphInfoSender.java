@@ -1,77 +1,77 @@
 package Component.Sender;
 
-import Component.Graph.Graph;
+import Component.AreaRouter;
 import Component.Message.GraphInfo;
+import util.Broadcaster;
+import util.TimingWheel;
 
 import java.io.IOException;
-import java.net.DatagramSocket;
 import java.util.*;
-
-import static util.Broadcaster.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 路径信息发送器，定时发送本结点的所有路径信息（一个 Path 对象 List）。
+ * 每个区域单独发送，只发给该区域内的邻居，内容只有该区域的路径与汇总路径。
  */
 public class GraphInfoSender implements TimingSender
 {
-    // 定时器。用来为发送路径信息设定定时任务。
-    private final Timer sendTimer;
+    // 定时发送路径信息的任务，start 之后才有。
+    private TimingWheel.Timeout sendTimeout;
 
-    // 结点的图对象。
-    private final Graph graph;
+    // 结点的分区路由。
+    private final AreaRouter areaRouter;
 
     // 这个 sender 的发送间隔，单位为毫秒。
     private final long sendInterval;
 
-    // 这个结点向外发送数据的 socket。
-    private final DatagramSocket datagramSocket;
+    // 这个结点向外发送数据的发送器。
+    private final Broadcaster broadcaster;
 
-    // 所有邻居结点的端口。
-    private List<Integer> neighborPorts;
+    // 每个区域内所有邻居结点的端口。
+    private Map<String, List<Integer>> areaNeighborPorts;
 
     private final String senderId;
 
 
     /**
-     * @param graph          要发送的图，也就是本进程的图。
-     * @param datagramSocket 发送图使用的 socket。
-     * @param neighborPorts  所有邻居结点的端口号。
-     * @param sendInterval   发送路径信息的间隔。
+     * @param areaRouter        本进程的分区路由，提供各区域要发送的路径。
+     * @param broadcaster       发送图使用的发送器。
+     * @param areaNeighborPorts 区域到该区域内所有邻居结点端口号的映射。
+     * @param sendInterval      发送路径信息的间隔。
      */
-    public GraphInfoSender(String nodeId, Graph graph, DatagramSocket datagramSocket, List<Integer> neighborPorts, long sendInterval)
+    public GraphInfoSender(String nodeId, AreaRouter areaRouter, Broadcaster broadcaster, Map<String, List<Integer>> areaNeighborPorts, long sendInterval)
     {
         this.senderId = nodeId;
-        this.graph = graph;
-        this.datagramSocket = datagramSocket;
-        this.neighborPorts = neighborPorts;
+        this.areaRouter = areaRouter;
+        this.broadcaster = broadcaster;
+        this.areaNeighborPorts = areaNeighborPorts;
 
-        sendTimer = new Timer(true);
         this.sendInterval = sendInterval;
     }
 
     public void start()
     {
-        // 定时把路径信息通过 socket 发送到所有邻居结点端口
-        sendTimer.schedule(new TimerTask()
+        // 定时把路径信息通过 socket 发送到所有邻居结点端口。编码、压缩与发送比较耗时，在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+        sendTimeout = TimingWheel.getInstance().scheduleAtFixedRate(() -> ForkJoinPool.commonPool().execute(() ->
         {
-            @Override
-            public void run()
+            try
             {
-                try
-                {
-                    broadcast(new GraphInfo(graph, senderId), datagramSocket, neighborPorts);
-                }
-                catch (IOException e)
+                for (Map.Entry<String, List<Integer>> entry : areaNeighborPorts.entrySet())
                 {
-                    System.err.println("图发送出现错误");
-                    System.err.println(e.getLocalizedMessage());
+                    final String areaId = entry.getKey();
+                    broadcaster.broadcast(new GraphInfo(areaRouter.getAreaPathList(areaId), areaRouter.getSummaryList(areaId), areaId, senderId), entry.getValue());
                 }
             }
-        }, 0, sendInterval);
+            catch (IOException e)
+            {
+                System.err.println("图发送出现错误");
+                System.err.println(e.getLocalizedMessage());
+            }
+        }), 0, sendInterval);
     }
 
     public void stop()
     {
-        sendTimer.cancel();
+        sendTimeout.cancel();
     }
 }
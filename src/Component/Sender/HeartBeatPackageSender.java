@@ -1,19 +1,18 @@
 package Component.Sender;
 
 import Component.Message.HeartBeatPackage;
+import util.Broadcaster;
+import util.TimingWheel;
 
 import java.io.IOException;
-import java.net.DatagramSocket;
 import java.util.*;
 
-import static util.Broadcaster.*;
-
 /**
  * 心跳包发送器。每隔一段时间发送一个心跳包。
  */
 public class HeartBeatPackageSender implements TimingSender
 {
-    private final Timer timer;
+    private TimingWheel.Timeout timeout;
 
     // 发送者的 NodeId
     private final String senderNodeId;
@@ -21,49 +20,48 @@ public class HeartBeatPackageSender implements TimingSender
     // 这个 sender 的发送间隔，单位为毫秒
     private final long sendInterval;
 
-    // 这个结点向外发送数据的 socket。
-    private final DatagramSocket datagramSocket;
+    // 这个结点向外发送数据的发送器。
+    private final Broadcaster broadcaster;
 
     // 所有邻居结点的端口
     private List<Integer> neighborPorts;
 
+    // 心跳包的内容不变，只编码一次
+    private final byte[] encodedHeartBeat;
+
     /**
      * @param senderNodeId   发送者的 NodeId。
-     * @param datagramSocket 发送图使用的 socket。
+     * @param broadcaster    发送图使用的发送器。
      * @param neighborPorts  所有邻居结点的端口号。
      * @param sendInterval   发送路径信息的间隔。
      */
-    public HeartBeatPackageSender(String senderNodeId, DatagramSocket datagramSocket, List<Integer> neighborPorts, long sendInterval)
+    public HeartBeatPackageSender(String senderNodeId, Broadcaster broadcaster, List<Integer> neighborPorts, long sendInterval)
     {
         this.senderNodeId = senderNodeId;
-        this.datagramSocket = datagramSocket;
+        this.broadcaster = broadcaster;
         this.neighborPorts = neighborPorts;
-        timer = new Timer(true);
         this.sendInterval = sendInterval;
+        this.encodedHeartBeat = broadcaster.encodeOnce(new HeartBeatPackage(senderNodeId));
     }
 
     public void start()
     {
-        timer.schedule(new TimerTask()
+        timeout = TimingWheel.getInstance().scheduleAtFixedRate(() ->
         {
-            @Override
-            public void run()
+            try
+            {
+                broadcaster.broadcastEncoded(encodedHeartBeat, neighborPorts);
+            }
+            catch (IOException e)
             {
-                try
-                {
-                    broadcast(new HeartBeatPackage(senderNodeId), datagramSocket, neighborPorts);
-                }
-                catch (IOException e)
-                {
-                    System.err.println("心跳包发送出现错误");
-                    System.err.println(e.getLocalizedMessage());
-                }
+                System.err.println("心跳包发送出现错误");
+                System.err.println(e.getLocalizedMessage());
             }
         }, 0, sendInterval);
     }
 
     public void stop()
     {
-        timer.cancel();
+        timeout.cancel();
     }
 }
@@ -1,6 +1,7 @@
 package Component.ThreadPool;
 
 import Component.Graph.Pair;
+import util.TimingWheel;
 
 import java.util.*;
 
@@ -81,9 +82,9 @@ public class ThreadPool
         runningThreadList = new LinkedList<>();
         waitingWorkQueue = new LinkedList<>();
 
-        // 启动进程池管理线程
+        // 安排进程池的定时管理任务
         ThreadPoolManager poolManager = new ThreadPoolManager();
-        new Thread(poolManager).start();
+        poolManager.run();
     }
 
     /**
@@ -146,8 +147,9 @@ public class ThreadPool
      *
      * @param objNeedsProcess 被处理对象。
      * @param processor       对这个对象进行处理的服务程序，实现 Processor 接口。
+     * @return 任务被丢弃时返回 false，调用者需要自己释放被处理对象占用的资源。
      */
-    public void createThread(Object objNeedsProcess, Processor processor)
+    public boolean createThread(Object objNeedsProcess, Processor processor)
     {
         synchronized (waitingThreadListLock)
         {
@@ -164,6 +166,7 @@ public class ThreadPool
                         if (isWaitingWorkQueueFull())
                         {
                             System.out.println("警告：线程池已满，拒绝创建新线程");
+                            return false;
                         }
                         // 没有满，就放进队列尾部
                         else
@@ -181,6 +184,7 @@ public class ThreadPool
                 }
             }
         }
+        return true;
     }
 
     private Pair<Object, Processor> getWaitingWork()
@@ -249,12 +253,10 @@ public class ThreadPool
     }
 
     /**
-     * 线程池管理类，开启另一个线程定时管理线程池。
+     * 线程池管理类，在共用的时间轮中定时管理线程池。
      */
     class ThreadPoolManager implements Runnable
     {
-        private final Timer timer = new Timer(true);
-
         /**
          * 当进程池进程数超出范围时进行干预。
          * 如果线程数量不够，就往等待队列里面添加新的。
@@ -478,7 +480,7 @@ public class ThreadPool
         }
 
         /**
-         * 调用 Timer 运行定时整理任务。
+         * 在时间轮中安排定时整理任务。
          */
 
         public void run()
@@ -494,37 +496,29 @@ public class ThreadPool
             }, 0, 5000);*/
 
             // 每 100 毫秒执行队列中的任务
-            timer.schedule(new TimerTask()
+            TimingWheel.getInstance().scheduleAtFixedRate(() ->
             {
-                @Override
-                public void run()
+                synchronized (waitingThreadListLock)
                 {
-                    synchronized (waitingThreadListLock)
+                    synchronized (runningThreadListLock)
                     {
-                        synchronized (runningThreadListLock)
+                        synchronized (waitingWorkQueueLock)
                         {
-                            synchronized (waitingWorkQueueLock)
-                            {
-                                runWaitingWork();
-                            }
+                            runWaitingWork();
                         }
                     }
                 }
             }, 0, 100);
 
             // 每 250 毫秒执行一次线程池整理
-            timer.schedule(new TimerTask()
+            TimingWheel.getInstance().scheduleAtFixedRate(() ->
             {
-                @Override
-                public void run()
+                synchronized (waitingThreadListLock)
                 {
-                    synchronized (waitingThreadListLock)
+                    synchronized (runningThreadListLock)
                     {
-                        synchronized (runningThreadListLock)
-                        {
-                            checkPoolRange();
-                            rearrangePool();
-                        }
+                        checkPoolRange();
+                        rearrangePool();
                     }
                 }
             }, 0, 250);
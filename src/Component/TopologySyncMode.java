@@ -0,0 +1,19 @@
+package Component;
+
+/**
+ * 结点之间同步拓扑的方式。
+ */
+public enum TopologySyncMode
+{
+    // 每个发送周期都发送全部路径
+    FULL,
+
+    // 只发送邻居确认过的序号之后的变化，邻居落后太多时才发送全部路径
+    DELTA,
+
+    // 每个发送周期只发送拓扑摘要，摘要不同时再交换不同的部分
+    DIGEST,
+
+    // 每个结点只发布描述自己路径的链路状态通告，通告在变化时立即扩散
+    LSA
+}
@@ -1,4 +1,5 @@
 import Component.Node;
+import Component.NodeConfig;
 
 import java.io.*;
 import java.nio.file.Path;
@@ -24,12 +25,10 @@ public class Main
             try (InputStream in = new FileInputStream("config.conf"))
             {
                 properties.load(in);
-                final long heartBeatSendInterval = (long) Double.parseDouble(properties.getProperty("heartBeatSendInterval"));
-                final long graphInfoSendInterval = (long) (Double.parseDouble(properties.getProperty("graphInfoSendInterval")) * 1000);
-                final long printInterval = (long) (Double.parseDouble(properties.getProperty("printInterval")) * 1000);
+                final NodeConfig config = new NodeConfig(properties);
                 try
                 {
-                    Node node = new Node(nodeId, port, neighborConfigFilePath, heartBeatSendInterval, graphInfoSendInterval, printInterval);
+                    Node node = new Node(nodeId, port, neighborConfigFilePath, config);
                     node.listen();
                 }
                 catch (IOException e)
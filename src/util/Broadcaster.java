@@ -1,24 +1,339 @@
 package util;
 
+import Component.Message.MessageCodec;
+
 import java.io.*;
 import java.net.*;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static util.Converter.objectToByteArray;
+import static util.Converter.*;
 
+/**
+ * 通过一个 UDP 通道发送消息。
+ * 批量窗口大于 0 时，消息不立即发送，而是按目标端口暂存；窗口结束时每个端口只发送一个数据包，
+ * 窗口内发往同一端口的多个消息（心跳包、路径信息、转发的通告等）合并为一个批量数据包，减少数据包数量。
+ * 只有一个消息时直接发送这个消息，不加批量数据包的头部。
+ * 每个数据包都不超过最大字节数：批量数据包再加入消息会超过时先把已暂存的消息发送出去；
+ * 单个消息编码后超过时切成多个分片立即发送，由接收方的 Reassembler 重新组合，避免 IP 层分片以及超过 UDP 数据包上限时发送失败。
+ * 设置了压缩阈值时，编码后超过阈值的消息先压缩再发送。阈值会自适应调整：压缩效果差时提高到这个消息长度的两倍，之后更短的消息不再尝试压缩；
+ * 效果好时逐渐降回配置值。
+ * 每个消息只编码一次，发往所有端口的数据包共用同一份编码；目标地址在启动时解析一次并保存在邻居地址表中，发送时不再查询本机地址。
+ * 内容不变的消息（例如心跳包）可以用 encodeOnce 预先编码，之后每次用 broadcastEncoded 发送，不需要重新编码。
+ */
 public class Broadcaster
 {
-    public static <T extends Serializable> void broadcast(T object, DatagramSocket datagramSocket, List<Integer> portList) throws IOException
+    // 批量数据包头部与每个消息的长度前缀的最大字节数
+    private static final int BATCH_HEADER_SIZE = 2 + 5;
+    private static final int BATCH_ENTRY_HEADER_SIZE = 5;
+
+    // 压缩后至少节省这个比例才算效果好，低于 POOR_COMPRESSION_SAVING 算效果差
+    private static final double GOOD_COMPRESSION_SAVING = 0.25;
+    private static final double POOR_COMPRESSION_SAVING = 0.1;
+
+    // 自适应调整时压缩阈值的上限
+    private static final int MAX_COMPRESSION_THRESHOLD = 1024 * 1024;
+
+    private final DatagramChannel datagramChannel;
+
+    // 所有结点都在本机，启动时解析一次
+    private final InetAddress localHost;
+
+    // 端口到目标地址的邻居地址表
+    private final Map<Integer, InetSocketAddress> addresses;
+
+    // 一个数据包的最大字节数
+    private final int maxDatagramSize;
+
+    // 配置的压缩阈值，不大于 0 时不压缩
+    private final int configuredCompressionThreshold;
+
+    // 当前使用的压缩阈值
+    private volatile int compressionThreshold;
+
+    // 下一个被分片的消息的编号。以随机数开始，重新启动后的编号不容易与启动前接收方还没有丢弃的分片相同
+    private final AtomicInteger nextMessageId = new AtomicInteger(new Random().nextInt());
+
+    // 批量窗口，单位为毫秒，不大于 0 时不合并
+    private final long batchWindow;
+
+    // 每个端口暂存的消息
+    private final Map<Integer, PendingBatch> pendingBatches;
+
+    private final byte[] pendingLock = new byte[0];
+
+    // 是否已经安排了一次发送
+    private boolean flushScheduled;
+
+    /**
+     * 一个端口暂存的消息。
+     */
+    private static class PendingBatch
+    {
+        final List<byte[]> messages = new ArrayList<>();
+
+        // 合并为批量数据包后的最大字节数
+        int size = BATCH_HEADER_SIZE;
+    }
+
+    /**
+     * @param datagramChannel 发送使用的阻塞模式的通道。
+     * @param batchWindow     批量窗口，单位为毫秒，不大于 0 时每个消息立即单独发送。
+     * @param maxDatagramSize 一个数据包的最大字节数。
+     * @param compressionThreshold 编码后超过这个字节数的消息压缩发送，不大于 0 时不压缩。
+     */
+    public Broadcaster(DatagramChannel datagramChannel, long batchWindow, int maxDatagramSize, int compressionThreshold) throws UnknownHostException
+    {
+        if (maxDatagramSize < MessageCodec.MAX_FRAGMENT_HEADER_SIZE + MessageCodec.MIN_FRAGMENT_PAYLOAD_SIZE)
+        {
+            throw new IllegalArgumentException("数据包最大字节数过小 " + maxDatagramSize);
+        }
+        this.datagramChannel = datagramChannel;
+        this.localHost = InetAddress.getLocalHost();
+        this.addresses = new ConcurrentHashMap<>();
+        this.maxDatagramSize = maxDatagramSize;
+        this.configuredCompressionThreshold = compressionThreshold;
+        this.compressionThreshold = compressionThreshold;
+        this.batchWindow = batchWindow;
+        this.pendingBatches = new HashMap<>();
+    }
+
+    /**
+     * 把邻居的端口加入邻居地址表。启动时读取配置文件之后调用，之后发送时直接使用解析好的地址；没有加入的端口在第一次发送时加入。
+     */
+    public void addNeighborPorts(Collection<Integer> ports)
+    {
+        for (int port : ports)
+        {
+            addressOf(port);
+        }
+    }
+
+    private InetSocketAddress addressOf(int port)
+    {
+        return addresses.computeIfAbsent(port, key -> new InetSocketAddress(localHost, key));
+    }
+
+    public void broadcast(Object object, List<Integer> portList) throws IOException
+    {
+        // 编码结果在当前线程复用的缓冲区中，直接作为数据包内容发送，不再复制
+        broadcast(encode(object), null, portList);
+    }
+
+    /**
+     * 编码一个内容不变的消息，返回的编码可以用 broadcastEncoded 反复发送。
+     */
+    public byte[] encodeOnce(Object object)
+    {
+        final ByteBuffer buffer = encode(object);
+        return Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+    }
+
+    /**
+     * 发送由 encodeOnce 编码的消息。编码不会被修改，暂存时直接使用，不再复制。
+     */
+    public void broadcastEncoded(byte[] message, List<Integer> portList) throws IOException
     {
-        byte[] infoByteArray = objectToByteArray(object);
-        byte[] buffer = new byte[infoByteArray.length];
-        DatagramPacket packet = new DatagramPacket(buffer, infoByteArray.length);
-        packet.setAddress(InetAddress.getLocalHost());
-        packet.setData(infoByteArray);
+        broadcast(ByteBuffer.wrap(message), message, portList);
+    }
+
+    /**
+     * 把 buffer 从 0 到 limit 的消息编码发送到所有端口。message 为内容相同、之后不会被修改的数组，为 null 时暂存需要先复制一份。
+     */
+    private void broadcast(ByteBuffer buffer, byte[] message, List<Integer> portList) throws IOException
+    {
+        if (buffer.limit() > maxDatagramSize)
+        {
+            sendFragments(buffer, portList);
+            return;
+        }
+        if (batchWindow <= 0)
+        {
+            for (int port : portList)
+            {
+                sendPacket(buffer, port);
+            }
+            return;
+        }
+
+        // 所有端口共用同一份
+        if (message == null)
+        {
+            message = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+        }
         for (int port : portList)
         {
-            packet.setPort(port);
-            datagramSocket.send(packet);
+            enqueue(port, message);
+        }
+    }
+
+    /**
+     * 只发送到一个端口。
+     */
+    public void send(Object object, int port) throws IOException
+    {
+        final ByteBuffer buffer = encode(object);
+        if (buffer.limit() > maxDatagramSize)
+        {
+            sendFragments(buffer, Collections.singletonList(port));
+            return;
+        }
+        if (batchWindow <= 0)
+        {
+            sendPacket(buffer, port);
+            return;
+        }
+        enqueue(port, Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit()));
+    }
+
+    /**
+     * 编码消息，超过压缩阈值时压缩。返回的缓冲区为当前线程复用的缓冲区，从 0 到 limit 为要发送的内容。
+     */
+    private ByteBuffer encode(Object object)
+    {
+        final ByteBuffer encoded = objectToByteBuffer(object);
+        final int threshold = compressionThreshold;
+        if (configuredCompressionThreshold <= 0 || encoded.limit() <= threshold)
+        {
+            return encoded;
+        }
+
+        final ByteBuffer compressed = compressToByteBuffer(encoded);
+        final double saving = compressed == null ? 0 : 1 - (double) compressed.limit() / encoded.limit();
+        if (saving < POOR_COMPRESSION_SAVING)
+        {
+            compressionThreshold = Math.min(Math.max(threshold, encoded.limit() * 2), MAX_COMPRESSION_THRESHOLD);
+        }
+        else if (saving >= GOOD_COMPRESSION_SAVING && threshold > configuredCompressionThreshold)
+        {
+            compressionThreshold = Math.max(configuredCompressionThreshold, threshold / 2);
+        }
+        return compressed == null ? encoded : compressed;
+    }
+
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    /**
+     * 立即发送所有暂存的消息。
+     */
+    public void flush()
+    {
+        final Map<Integer, PendingBatch> batches;
+        synchronized (pendingLock)
+        {
+            flushScheduled = false;
+            if (pendingBatches.isEmpty())
+            {
+                return;
+            }
+            batches = new HashMap<>(pendingBatches);
+            pendingBatches.clear();
+        }
+        for (Map.Entry<Integer, PendingBatch> entry : batches.entrySet())
+        {
+            try
+            {
+                sendBatch(entry.getValue().messages, entry.getKey());
+            }
+            catch (IOException e)
+            {
+                System.err.println("批量数据包发送出现错误");
+                System.err.println(e.getLocalizedMessage());
+            }
         }
     }
+
+    /**
+     * 暂存一个发往 port 的消息，没有安排发送时安排在一个窗口后发送。加入后批量数据包会超过最大字节数时，先发送这个端口已暂存的消息。
+     */
+    private void enqueue(int port, byte[] message) throws IOException
+    {
+        List<byte[]> full = null;
+        synchronized (pendingLock)
+        {
+            PendingBatch batch = pendingBatches.get(port);
+            if (batch != null && batch.size + BATCH_ENTRY_HEADER_SIZE + message.length > maxDatagramSize)
+            {
+                full = batch.messages;
+                batch = null;
+            }
+            if (batch == null)
+            {
+                batch = new PendingBatch();
+                pendingBatches.put(port, batch);
+            }
+            batch.messages.add(message);
+            batch.size += BATCH_ENTRY_HEADER_SIZE + message.length;
+
+            if (!flushScheduled)
+            {
+                flushScheduled = true;
+                // 发送会阻塞，在公共的 ForkJoinPool 中执行，不推迟时间轮中的心跳
+                TimingWheel.getInstance().schedule(() -> ForkJoinPool.commonPool().execute(this::flush), batchWindow);
+            }
+        }
+        if (full != null)
+        {
+            sendBatch(full, port);
+        }
+    }
+
+    private void sendBatch(List<byte[]> messages, int port) throws IOException
+    {
+        if (messages.size() == 1)
+        {
+            sendPacket(ByteBuffer.wrap(messages.get(0)), port);
+        }
+        else
+        {
+            sendPacket(batchToByteBuffer(messages), port);
+        }
+    }
+
+    /**
+     * 把 buffer 中的消息编码切成分片，依次发送到每个端口。
+     */
+    private void sendFragments(ByteBuffer buffer, List<Integer> portList) throws IOException
+    {
+        final int payloadSize = maxDatagramSize - MessageCodec.MAX_FRAGMENT_HEADER_SIZE;
+        final int length = buffer.limit();
+        final int count = (length + payloadSize - 1) / payloadSize;
+        if (length > MessageCodec.MAX_FRAGMENTED_MESSAGE_SIZE)
+        {
+            throw new IOException("消息过大，无法分片发送 " + length);
+        }
+        final int messageId = nextMessageId.getAndIncrement();
+        final ByteBuffer fragment = ByteBuffer.allocate(maxDatagramSize);
+        for (int index = 0; index < count; index++)
+        {
+            final int offset = index * payloadSize;
+            fragment.clear();
+            MessageCodec.encodeFragmentHeader(messageId, index, count, fragment);
+            fragment.put(buffer.array(), buffer.arrayOffset() + offset, Math.min(payloadSize, length - offset));
+            fragment.flip();
+            for (int port : portList)
+            {
+                sendPacket(fragment, port);
+            }
+        }
+    }
+
+    /**
+     * 把 buffer 从 position 到 limit 的内容作为一个数据包发送，发送后 position 不变，同一个 buffer 可以继续发往其他端口。
+     */
+    private void sendPacket(ByteBuffer buffer, int port) throws IOException
+    {
+        final int position = buffer.position();
+        final InetSocketAddress target = addressOf(port);
+        datagramChannel.send(buffer, target);
+        TrafficStatistics.recordSent(buffer.limit() - position);
+        buffer.position(position);
+    }
 }
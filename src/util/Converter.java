@@ -1,27 +1,112 @@
 package util;
 
+import Component.Message.MessageCodec;
+
 import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
- * 常用格式转换器。
+ * 常用格式转换器。消息与字节之间的转换使用 MessageCodec 的二进制编码。
  */
 public class Converter
 {
-    public static <T extends Serializable> byte[] objectToByteArray(T Object) throws IOException
+    // 编码缓冲区的初始大小，放不下时加倍
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // 每个线程复用的编码缓冲区
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    // 每个线程复用的压缩缓冲区
+    private static final ThreadLocal<ByteBuffer> COMPRESS_BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    /**
+     * 把消息编码到当前线程复用的缓冲区中，返回的缓冲区从 0 到 limit 为编码结果。
+     * 同一个线程下一次编码时缓冲区的内容会被覆盖，需要保留时请使用 objectToByteArray。
+     */
+    public static ByteBuffer objectToByteBuffer(Object object)
     {
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        ObjectOutputStream objOut = new ObjectOutputStream(byteOut);
-        objOut.writeObject(Object);
-        objOut.close();
-        return byteOut.toByteArray();
+        ByteBuffer buffer = ENCODE_BUFFERS.get();
+        while (true)
+        {
+            buffer.clear();
+            try
+            {
+                MessageCodec.encode(object, buffer);
+                buffer.flip();
+                return buffer;
+            }
+            catch (BufferOverflowException e)
+            {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                ENCODE_BUFFERS.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * 把多个已经编码的消息合并为一个批量数据包，写到当前线程复用的缓冲区中，返回的缓冲区从 0 到 limit 为编码结果。
+     */
+    public static ByteBuffer batchToByteBuffer(List<byte[]> messages)
+    {
+        ByteBuffer buffer = ENCODE_BUFFERS.get();
+        while (true)
+        {
+            buffer.clear();
+            try
+            {
+                MessageCodec.encodeBatch(messages, buffer);
+                buffer.flip();
+                return buffer;
+            }
+            catch (BufferOverflowException e)
+            {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                ENCODE_BUFFERS.set(buffer);
+            }
+        }
     }
 
-    public static Object byteArrayToObject(byte[] byteArray) throws IOException, ClassNotFoundException
+    /**
+     * 压缩从 0 到 limit 的消息编码，结果写到当前线程复用的压缩缓冲区中，返回的缓冲区从 0 到 limit 为压缩结果。
+     * 压缩后不比原来短时返回 null。
+     */
+    public static ByteBuffer compressToByteBuffer(ByteBuffer encoded)
     {
-        try (ByteArrayInputStream byteIn = new ByteArrayInputStream(byteArray);
-             ObjectInputStream objIn = new ObjectInputStream(byteIn))
+        ByteBuffer buffer = COMPRESS_BUFFERS.get();
+        if (buffer.capacity() < encoded.limit())
         {
-            return objIn.readObject();
+            buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, encoded.limit()));
+            COMPRESS_BUFFERS.set(buffer);
         }
+        buffer.clear();
+        if (!MessageCodec.compress(encoded, buffer))
+        {
+            return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public static byte[] objectToByteArray(Object object)
+    {
+        final ByteBuffer buffer = objectToByteBuffer(object);
+        final byte[] byteArray = new byte[buffer.remaining()];
+        buffer.get(byteArray);
+        return byteArray;
+    }
+
+    /**
+     * 从 buffer 的 position 到 limit 解码一个消息。
+     */
+    public static Object byteBufferToObject(ByteBuffer buffer) throws IOException
+    {
+        return MessageCodec.decode(buffer);
+    }
+
+    public static Object byteArrayToObject(byte[] byteArray) throws IOException
+    {
+        return MessageCodec.decode(ByteBuffer.wrap(byteArray));
     }
 }
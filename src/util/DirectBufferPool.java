@@ -0,0 +1,57 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 固定数量、固定大小的直接缓冲区池，接收数据包时使用。
+ * 直接缓冲区可以由通道直接读入，不经过 JDK 内部的临时缓冲区；所有缓冲区在创建时一次分配，之后反复使用，接收路径上没有逐个数据包的分配。
+ * 缓冲区都在使用中时 acquire 等待其他线程归还，这时数据包留在 socket 的接收缓冲区中，相当于对接收线程的背压。
+ */
+public class DirectBufferPool
+{
+    private final ArrayDeque<ByteBuffer> freeBuffers;
+
+    private final byte[] lock = new byte[0];
+
+    /**
+     * @param count    缓冲区的数量。
+     * @param capacity 每个缓冲区的字节数。
+     */
+    public DirectBufferPool(int count, int capacity)
+    {
+        this.freeBuffers = new ArrayDeque<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            freeBuffers.push(ByteBuffer.allocateDirect(capacity));
+        }
+    }
+
+    /**
+     * 取出一个清空的缓冲区，没有空闲的缓冲区时等待。
+     */
+    public ByteBuffer acquire() throws InterruptedException
+    {
+        synchronized (lock)
+        {
+            while (freeBuffers.isEmpty())
+            {
+                lock.wait();
+            }
+            return freeBuffers.pop();
+        }
+    }
+
+    /**
+     * 归还一个由 acquire 取出的缓冲区。归还之后调用者不能再使用它。
+     */
+    public void release(ByteBuffer buffer)
+    {
+        buffer.clear();
+        synchronized (lock)
+        {
+            freeBuffers.push(buffer);
+            lock.notify();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package util;
+
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * 扩散消息的去重过滤器，以 (发送结点, 区域, 序号) 识别一个消息。
+ * 已经见过的消息保存在哈希集合中，同时按加入的顺序记录在固定大小的环形数组里：
+ * 每次加入时从环的最旧一端删除超过保存时间的记录，环满时删除最旧的记录，因此检查与加入都是 O(1)，也不需要定时清理。
+ */
+public class DuplicateFilter
+{
+    /**
+     * 一个消息的标识。
+     */
+    private static class Key
+    {
+        final String originId;
+        final String areaId;
+        final long sequence;
+
+        Key(String originId, String areaId, long sequence)
+        {
+            this.originId = originId;
+            this.areaId = areaId;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            final Key key = (Key) obj;
+            return key.sequence == sequence && key.originId.equals(originId) && key.areaId.equals(areaId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(originId, areaId, sequence);
+        }
+    }
+
+    // 一个记录最长的保存时间，单位为毫秒
+    private final long timeToLive;
+
+    private final HashSet<Key> seenKeys;
+
+    // 按加入顺序保存的记录与加入时间，head 为下一个写入的位置
+    private final Key[] ring;
+    private final long[] insertTimes;
+    private int head;
+    private int size;
+
+    private final byte[] lock = new byte[0];
+
+    /**
+     * @param capacity   最多保存的记录数量。
+     * @param timeToLive 一个记录最长的保存时间，单位为毫秒。
+     */
+    public DuplicateFilter(int capacity, long timeToLive)
+    {
+        this.timeToLive = timeToLive;
+        this.seenKeys = new HashSet<>(capacity * 2);
+        this.ring = new Key[capacity];
+        this.insertTimes = new long[capacity];
+    }
+
+    /**
+     * 检查消息是否已经见过，没有见过时记录下来。检查与记录是原子的。
+     *
+     * @return 第一次见到这个消息时返回 true。
+     */
+    public boolean add(String originId, String areaId, long sequence)
+    {
+        final Key key = new Key(originId, areaId, sequence);
+        final long now = System.currentTimeMillis();
+        synchronized (lock)
+        {
+            while (size > 0 && now - insertTimes[tail()] > timeToLive)
+            {
+                removeOldest();
+            }
+            if (!seenKeys.add(key))
+            {
+                return false;
+            }
+            if (size == ring.length)
+            {
+                removeOldest();
+            }
+            ring[head] = key;
+            insertTimes[head] = now;
+            head = (head + 1) % ring.length;
+            size++;
+            return true;
+        }
+    }
+
+    private int tail()
+    {
+        return (head - size + ring.length) % ring.length;
+    }
+
+    private void removeOldest()
+    {
+        final int tail = tail();
+        seenKeys.remove(ring[tail]);
+        ring[tail] = null;
+        size--;
+    }
+}
@@ -0,0 +1,119 @@
+package util;
+
+/**
+ * Phi 累积故障检测器，用于判断一个邻居是否还在运行。
+ * 在一个固定大小的窗口中保存最近的心跳到达间隔，把间隔近似为正态分布；phi 为 -log10(在这个分布下，距上次心跳已经这么久还没有收到下一个的概率)。
+ * 间隔稳定时检测器很快就能确认故障；负载高、间隔抖动大时标准差变大，需要更长的时间才判断为故障，减少误判。
+ * 间隔保存在基本类型的环形数组中，同时维护总和与平方和，每次更新与计算都是 O(1)。不加锁，由调用者保证同步。
+ */
+public class PhiAccrualFailureDetector
+{
+    // 到达间隔的环形窗口
+    private final double[] intervals;
+    private int next;
+    private int count;
+    private double sum;
+    private double sumOfSquares;
+
+    // 标准差的下限，避免间隔非常稳定时一点抖动就被判断为故障
+    private final double minStandardDeviation;
+
+    // 上一次收到心跳的时间
+    private long lastArrivalTime;
+
+    /**
+     * @param windowSize           保存的到达间隔数量。
+     * @param expectedInterval     心跳的发送间隔，用来在收到足够的心跳之前估计分布，单位为毫秒。
+     * @param minStandardDeviation 标准差的下限，单位为毫秒。
+     * @param now                  开始检测的时间，视为这时收到了一次心跳。
+     */
+    public PhiAccrualFailureDetector(int windowSize, long expectedInterval, double minStandardDeviation, long now)
+    {
+        this.intervals = new double[windowSize];
+        this.minStandardDeviation = minStandardDeviation;
+        // 以发送间隔以及它上下四分之一的两个间隔开始，第一个真正的间隔到达之前就有合理的均值与标准差
+        record(expectedInterval - expectedInterval / 4.0);
+        record(expectedInterval + expectedInterval / 4.0);
+        this.lastArrivalTime = now;
+    }
+
+    /**
+     * 收到一次心跳。
+     */
+    public void heartbeat(long now)
+    {
+        record(now - lastArrivalTime);
+        lastArrivalTime = now;
+    }
+
+    /**
+     * 重新开始计时，不记录这次的间隔。用于邻居被判断为故障后又恢复的情况，故障期间的长间隔不代表正常的心跳分布。
+     */
+    public void restart(long now)
+    {
+        lastArrivalTime = now;
+    }
+
+    /**
+     * 返回当前的 phi 值。
+     */
+    public double phi(long now)
+    {
+        final double elapsed = now - lastArrivalTime;
+        final double mean = sum / count;
+        final double standardDeviation = standardDeviation(mean);
+
+        // 正态分布函数的 logistic 近似，误差很小且不需要计算误差函数
+        final double y = (elapsed - mean) / standardDeviation;
+        final double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean)
+        {
+            return -Math.log10(e / (1 + e));
+        }
+        return -Math.log10(1 - 1 / (1 + e));
+    }
+
+    /**
+     * 返回之后不再收到心跳时，phi 超过 threshold 的时间。检测器是按时间单调的，在这之前检查 phi 都不会超过阈值，
+     * 因此调用者只需要在这个时间检查一次，不需要定时扫描。
+     */
+    public long suspicionTime(double threshold)
+    {
+        final double mean = sum / count;
+        final double standardDeviation = standardDeviation(mean);
+
+        // phi(y) = threshold 即 0.070566 * y^3 + 1.5976 * y = ln((1 - P) / P)，P = 10^-threshold。
+        // 三次项与一次项的系数都为正，只有一个实根，由卡尔达诺公式求出
+        final double probability = Math.pow(10, -threshold);
+        final double c = Math.log((1 - probability) / probability);
+        final double p = 1.5976 / 0.070566;
+        final double q = -c / 0.070566;
+        final double root = Math.sqrt(q * q / 4 + p * p * p / 27);
+        final double y = Math.cbrt(-q / 2 + root) + Math.cbrt(-q / 2 - root);
+        return lastArrivalTime + (long) Math.ceil(mean + y * standardDeviation);
+    }
+
+    private double standardDeviation(double mean)
+    {
+        final double variance = Math.max(0, sumOfSquares / count - mean * mean);
+        return Math.max(Math.sqrt(variance), minStandardDeviation);
+    }
+
+    private void record(double interval)
+    {
+        if (count == intervals.length)
+        {
+            final double removed = intervals[next];
+            sum -= removed;
+            sumOfSquares -= removed * removed;
+        }
+        else
+        {
+            count++;
+        }
+        intervals[next] = interval;
+        sum += interval;
+        sumOfSquares += interval * interval;
+        next = (next + 1) % intervals.length;
+    }
+}
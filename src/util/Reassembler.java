@@ -0,0 +1,145 @@
+package util;
+
+import Component.Message.MessageFragment;
+
+import java.util.*;
+
+/**
+ * 分片重组缓存。按发送者端口与消息编号保存收到的分片，收齐后返回组合好的消息编码。
+ * 缓存的消息数量与字节数都有上限，超过时丢弃最早开始接收的消息；超过时限仍未收齐的消息也会被丢弃，发送者下一次发送时会重新发送完整的消息。
+ * 只在接收线程中使用，不加锁。
+ */
+public class Reassembler
+{
+    // 一个消息从收到第一个分片开始，收齐所有分片的时限，单位为毫秒
+    private static final long TIMEOUT = 3000;
+
+    // 最多同时重组的消息数量
+    private static final int MAX_PARTIAL_MESSAGES = 64;
+
+    // 所有正在重组的消息占用的字节数之和的上限，包括已收到的分片与保存分片的数组
+    private static final int MAX_BUFFERED_BYTES = 16 * 1024 * 1024;
+
+    // 保存分片的数组中每个元素按这么多字节计入占用
+    private static final int REFERENCE_SIZE = 8;
+
+    /**
+     * 正在重组的消息。
+     */
+    private static class PartialMessage
+    {
+        final long createTime = System.currentTimeMillis();
+        final byte[][] fragments;
+        int receivedCount;
+        int receivedBytes;
+
+        // 计入上限的字节数
+        int bufferedBytes;
+
+        PartialMessage(int count)
+        {
+            this.fragments = new byte[count][];
+            this.bufferedBytes = count * REFERENCE_SIZE;
+        }
+    }
+
+    // 按开始接收的顺序保存，最早的在最前面
+    private final LinkedHashMap<Long, PartialMessage> partialMessages;
+
+    private int bufferedBytes;
+
+    public Reassembler()
+    {
+        this.partialMessages = new LinkedHashMap<>();
+    }
+
+    /**
+     * 加入一个分片。
+     *
+     * @param sourcePort 发送者的端口。
+     * @return 所有分片都已收到时返回组合好的消息编码，否则返回 null。
+     */
+    public byte[] add(int sourcePort, MessageFragment fragment)
+    {
+        final long now = System.currentTimeMillis();
+        removeExpired(now);
+
+        final long key = ((long) sourcePort << 32) | (fragment.getMessageId() & 0xFFFFFFFFL);
+        PartialMessage message = partialMessages.get(key);
+        // 分片数量不一致说明是发送者重新启动之后编号相同的另一个消息
+        if (message != null && message.fragments.length != fragment.getCount())
+        {
+            remove(key);
+            message = null;
+        }
+        if (message == null)
+        {
+            if (fragment.getCount() == 1)
+            {
+                return fragment.getPayload();
+            }
+            message = new PartialMessage(fragment.getCount());
+            partialMessages.put(key, message);
+            bufferedBytes += message.bufferedBytes;
+        }
+        if (message.fragments[fragment.getIndex()] != null)
+        {
+            return null;
+        }
+
+        message.fragments[fragment.getIndex()] = fragment.getPayload();
+        message.receivedCount++;
+        message.receivedBytes += fragment.getPayload().length;
+        message.bufferedBytes += fragment.getPayload().length;
+        bufferedBytes += fragment.getPayload().length;
+
+        if (message.receivedCount == message.fragments.length)
+        {
+            remove(key);
+            final byte[] result = new byte[message.receivedBytes];
+            int offset = 0;
+            for (byte[] payload : message.fragments)
+            {
+                System.arraycopy(payload, 0, result, offset, payload.length);
+                offset += payload.length;
+            }
+            return result;
+        }
+
+        // 超过上限时丢弃最早的消息，可能包括刚加入的这个
+        final Iterator<Map.Entry<Long, PartialMessage>> iterator = partialMessages.entrySet().iterator();
+        while (iterator.hasNext() && (partialMessages.size() > MAX_PARTIAL_MESSAGES || bufferedBytes > MAX_BUFFERED_BYTES))
+        {
+            bufferedBytes -= iterator.next().getValue().bufferedBytes;
+            iterator.remove();
+        }
+        return null;
+    }
+
+    /**
+     * 丢弃超过时限的消息。消息按开始接收的顺序保存，遇到第一个没有超时的就可以停止。
+     */
+    private void removeExpired(long now)
+    {
+        final Iterator<Map.Entry<Long, PartialMessage>> iterator = partialMessages.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            final PartialMessage message = iterator.next().getValue();
+            if (now - message.createTime <= TIMEOUT)
+            {
+                break;
+            }
+            bufferedBytes -= message.bufferedBytes;
+            iterator.remove();
+        }
+    }
+
+    private void remove(long key)
+    {
+        final PartialMessage message = partialMessages.remove(key);
+        if (message != null)
+        {
+            bufferedBytes -= message.bufferedBytes;
+        }
+    }
+}
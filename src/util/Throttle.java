@@ -0,0 +1,102 @@
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 带指数退避的节流器，与 OSPF 的 SPF 计算与通告发布的节流方式相同。
+ * 安静一段时间之后的第一次触发在 initialDelay 之后执行；刚执行过又被触发时，距上一次执行至少等待保持时间，
+ * 保持时间从 holdTime 开始，每次这样的触发加倍，最多到 maxHoldTime；超过 2 * maxHoldTime 没有执行之后恢复为 holdTime。
+ * 已经安排了执行、还没有开始时的触发都合并到这一次执行中，因此连续的大量变化只引起一次执行。
+ * 到期时间由共用的时间轮安排，action 可能比较耗时（例如重新计算路由），在公共的 ForkJoinPool 中执行，不占用时间轮的线程。
+ */
+public class Throttle
+{
+    private final Runnable action;
+
+    // 单位都为毫秒
+    private final long initialDelay;
+    private final long holdTime;
+    private final long maxHoldTime;
+
+    // 下一次在执行之后不久被触发时的保持时间
+    private long currentHoldTime;
+
+    // 上一次执行的时间，还没有执行过时为 0
+    private long lastRunTime;
+
+    // 是否已经安排了一次执行
+    private boolean scheduled;
+
+    private final byte[] lock = new byte[0];
+
+    /**
+     * @param initialDelay 安静时第一次触发到执行的延迟，单位为毫秒。
+     * @param holdTime     最短的保持时间，单位为毫秒。
+     * @param maxHoldTime  最长的保持时间，单位为毫秒。
+     */
+    public Throttle(long initialDelay, long holdTime, long maxHoldTime, Runnable action)
+    {
+        this.action = action;
+        this.initialDelay = initialDelay;
+        this.holdTime = holdTime;
+        this.maxHoldTime = Math.max(holdTime, maxHoldTime);
+        this.currentHoldTime = holdTime;
+    }
+
+    /**
+     * 请求执行一次。已经安排了执行时不重复安排。
+     */
+    public void trigger()
+    {
+        synchronized (lock)
+        {
+            if (scheduled)
+            {
+                return;
+            }
+            scheduled = true;
+            final long now = System.currentTimeMillis();
+            final long delay;
+            if (lastRunTime == 0 || now - lastRunTime > 2 * maxHoldTime)
+            {
+                currentHoldTime = holdTime;
+                delay = initialDelay;
+            }
+            else
+            {
+                delay = Math.max(initialDelay, lastRunTime + currentHoldTime - now);
+                currentHoldTime = Math.min(currentHoldTime * 2, maxHoldTime);
+            }
+            TimingWheel.getInstance().schedule(() -> ForkJoinPool.commonPool().execute(this::run), delay);
+        }
+    }
+
+    private void run()
+    {
+        synchronized (lock)
+        {
+            scheduled = false;
+            lastRunTime = System.currentTimeMillis();
+        }
+        try
+        {
+            action.run();
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println("节流的任务执行时发生错误");
+            System.err.println(e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * 当前的保持时间，单位为毫秒。
+     */
+    public long getCurrentHoldTime()
+    {
+        synchronized (lock)
+        {
+            return currentHoldTime;
+        }
+    }
+}
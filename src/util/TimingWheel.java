@@ -0,0 +1,293 @@
+package util;
+
+import java.util.*;
+
+/**
+ * 进程内共用的哈希时间轮，代替每个组件各自的 java.util.Timer 线程。
+ * 时间轮有 WHEEL_SIZE 个槽，每个槽对应一个 TICK 的时间，定时任务按到期的 tick 放入对应槽的双向链表中，安排与取消都是 O(1)；
+ * 到期时间超过一圈的任务留在槽中，之后经过这个槽时再检查。
+ * 只有一个工作线程，它不在每个 tick 醒来，而是睡眠到下一个非空的槽，没有任务时一直睡眠，直到安排了更早到期的任务。
+ * 任务在工作线程中执行，应当很快完成；耗时的任务应当交给其他线程执行，否则会推迟其他任务（例如心跳包的发送）。
+ */
+public class TimingWheel
+{
+    // 一个 tick 的长度，单位为纳秒
+    private static final long TICK = 1_000_000;
+
+    // 槽的数量，必须是 2 的幂
+    private static final int WHEEL_SIZE = 1024;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    /**
+     * 一个已经安排的任务，可以用来取消。周期任务每次执行后以同一个对象重新放入时间轮。
+     */
+    public static class Timeout
+    {
+        private final TimingWheel wheel;
+        private final Runnable task;
+
+        // 周期，单位为纳秒，为 0 时只执行一次
+        private final long period;
+
+        // 到期时间，相对于时间轮的启动时间，单位为纳秒
+        private long deadline;
+
+        // 到期的 tick
+        private long deadlineTick;
+
+        // 所在槽的链表中的前后结点，不在时间轮中时都为 null
+        private Timeout previous;
+        private Timeout next;
+        private boolean inWheel;
+
+        private boolean cancelled;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline, long period)
+        {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * 取消这个任务。还没有开始执行的任务不会再执行，正在执行的任务会执行完，周期任务之后不再执行。
+         */
+        public void cancel()
+        {
+            wheel.cancel(this);
+        }
+    }
+
+    private static class InstanceHolder
+    {
+        static final TimingWheel INSTANCE = new TimingWheel();
+    }
+
+    // 每个槽的链表头
+    private final Timeout[] heads;
+
+    // 时间轮的启动时间，System.nanoTime()
+    private final long startTime;
+
+    // 已经处理到的 tick
+    private long currentTick;
+
+    // 工作线程计划醒来的 tick，安排了更早到期的任务时需要唤醒它
+    private long wakeTick = Long.MAX_VALUE;
+
+    private final byte[] lock = new byte[0];
+
+    private TimingWheel()
+    {
+        this.heads = new Timeout[WHEEL_SIZE];
+        this.startTime = System.nanoTime();
+        final Thread worker = new Thread(this::work, "TimingWheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 返回进程内共用的时间轮。
+     */
+    public static TimingWheel getInstance()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * 安排一个任务在 delay 毫秒后执行一次。
+     */
+    public Timeout schedule(Runnable task, long delay)
+    {
+        final Timeout timeout = new Timeout(this, task, now() + Math.max(0, delay) * 1_000_000, 0);
+        synchronized (lock)
+        {
+            add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * 安排一个任务在 initialDelay 毫秒后第一次执行，之后每隔 period 毫秒执行一次。与 Timer.scheduleAtFixedRate 相同，执行时间不随之前的延迟漂移。
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period)
+    {
+        if (period <= 0)
+        {
+            throw new IllegalArgumentException("周期必须大于 0");
+        }
+        final Timeout timeout = new Timeout(this, task, now() + Math.max(0, initialDelay) * 1_000_000, period * 1_000_000);
+        synchronized (lock)
+        {
+            add(timeout);
+        }
+        return timeout;
+    }
+
+    private void cancel(Timeout timeout)
+    {
+        synchronized (lock)
+        {
+            timeout.cancelled = true;
+            if (timeout.inWheel)
+            {
+                remove(timeout);
+            }
+        }
+    }
+
+    private long now()
+    {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * 把任务放入到期 tick 对应的槽。已经过期的放入下一个 tick。调用时需要持有 lock。
+     */
+    private void add(Timeout timeout)
+    {
+        timeout.deadlineTick = Math.max((timeout.deadline + TICK - 1) / TICK, currentTick + 1);
+        final int index = (int) (timeout.deadlineTick & MASK);
+        timeout.previous = null;
+        timeout.next = heads[index];
+        if (heads[index] != null)
+        {
+            heads[index].previous = timeout;
+        }
+        heads[index] = timeout;
+        timeout.inWheel = true;
+        if (timeout.deadlineTick < wakeTick)
+        {
+            lock.notify();
+        }
+    }
+
+    /**
+     * 从所在的槽中删除任务。调用时需要持有 lock。
+     */
+    private void remove(Timeout timeout)
+    {
+        final int index = (int) (timeout.deadlineTick & MASK);
+        if (timeout.previous == null)
+        {
+            heads[index] = timeout.next;
+        }
+        else
+        {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next != null)
+        {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.inWheel = false;
+    }
+
+    private void work()
+    {
+        final List<Timeout> expired = new ArrayList<>();
+        while (true)
+        {
+            synchronized (lock)
+            {
+                collectExpired(expired);
+                if (expired.isEmpty())
+                {
+                    waitForNextTick();
+                    continue;
+                }
+            }
+
+            for (Timeout timeout : expired)
+            {
+                // 取出之后、执行之前取消的任务不再执行。周期任务先放回时间轮，任务执行时可以取消自己
+                synchronized (lock)
+                {
+                    if (timeout.cancelled)
+                    {
+                        continue;
+                    }
+                    if (timeout.period > 0)
+                    {
+                        timeout.deadline += timeout.period;
+                        add(timeout);
+                    }
+                }
+                try
+                {
+                    timeout.task.run();
+                }
+                catch (Throwable e)
+                {
+                    System.err.println("定时任务执行时发生错误");
+                    System.err.println(e.getLocalizedMessage());
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * 处理从上次处理到的 tick 到当前 tick 之间的所有槽，取出已经到期的任务。间隔超过一圈时每个槽只需要处理一次。调用时需要持有 lock。
+     */
+    private void collectExpired(List<Timeout> expired)
+    {
+        final long nowTick = now() / TICK;
+        final long tickCount = Math.min(nowTick - currentTick, WHEEL_SIZE);
+        for (long tick = currentTick + 1; tick <= currentTick + tickCount; tick++)
+        {
+            Timeout timeout = heads[(int) (tick & MASK)];
+            while (timeout != null)
+            {
+                final Timeout next = timeout.next;
+                if (timeout.deadlineTick <= nowTick)
+                {
+                    remove(timeout);
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+    }
+
+    /**
+     * 睡眠到下一个非空的槽，时间轮为空时一直睡眠，直到安排了新的任务。调用时需要持有 lock。
+     */
+    private void waitForNextTick()
+    {
+        wakeTick = Long.MAX_VALUE;
+        for (long tick = currentTick + 1; tick <= currentTick + WHEEL_SIZE; tick++)
+        {
+            if (heads[(int) (tick & MASK)] != null)
+            {
+                wakeTick = tick;
+                break;
+            }
+        }
+        try
+        {
+            if (wakeTick == Long.MAX_VALUE)
+            {
+                lock.wait();
+            }
+            else
+            {
+                final long waitTime = wakeTick * TICK - now();
+                if (waitTime > 0)
+                {
+                    lock.wait(waitTime / 1_000_000, (int) (waitTime % 1_000_000));
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        wakeTick = Long.MAX_VALUE;
+    }
+}
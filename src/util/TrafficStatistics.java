@@ -0,0 +1,156 @@
+package util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本进程收发的数据包数量与字节数，用来比较不同路由方式的网络开销。
+ * 同时记录消息压缩前后的字节数与压缩、解压的用时，用来判断压缩节省的带宽是否值得花费的 CPU 时间。
+ * 接收分为多个分片时，另外按分片记录收到与在进程内丢弃的数据包，用来调整分片数量。
+ */
+public class TrafficStatistics
+{
+    private static final LongAdder sentPackets = new LongAdder();
+    private static final LongAdder sentBytes = new LongAdder();
+    private static final LongAdder receivedPackets = new LongAdder();
+    private static final LongAdder receivedBytes = new LongAdder();
+
+    private static final LongAdder compressionAttempts = new LongAdder();
+    private static final LongAdder bytesBeforeCompression = new LongAdder();
+    private static final LongAdder bytesAfterCompression = new LongAdder();
+    private static final LongAdder compressionNanos = new LongAdder();
+    private static final LongAdder decompressions = new LongAdder();
+    private static final LongAdder decompressionNanos = new LongAdder();
+
+    // 每个接收分片收到的数据包数量、字节数，以及因为数据无效或者线程池已满而丢弃的数据包数量，启动接收之前设置
+    private static LongAdder[] shardReceivedPackets = new LongAdder[0];
+    private static LongAdder[] shardReceivedBytes = new LongAdder[0];
+    private static LongAdder[] shardDroppedPackets = new LongAdder[0];
+
+    /**
+     * 设置接收分片的数量，在开始接收之前调用一次。
+     */
+    public static synchronized void setReceiveShardCount(int count)
+    {
+        shardReceivedPackets = createAdders(count);
+        shardReceivedBytes = createAdders(count);
+        shardDroppedPackets = createAdders(count);
+    }
+
+    private static LongAdder[] createAdders(int count)
+    {
+        final LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+        {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public static void recordSent(int bytes)
+    {
+        sentPackets.increment();
+        sentBytes.add(bytes);
+    }
+
+    public static void recordReceived(int shard, int bytes)
+    {
+        receivedPackets.increment();
+        receivedBytes.add(bytes);
+        shardReceivedPackets[shard].increment();
+        shardReceivedBytes[shard].add(bytes);
+    }
+
+    public static void recordReceiveDropped(int shard)
+    {
+        shardDroppedPackets[shard].increment();
+    }
+
+    public static long getSentPackets()
+    {
+        return sentPackets.sum();
+    }
+
+    public static long getSentBytes()
+    {
+        return sentBytes.sum();
+    }
+
+    public static long getReceivedPackets()
+    {
+        return receivedPackets.sum();
+    }
+
+    public static long getReceivedBytes()
+    {
+        return receivedBytes.sum();
+    }
+
+    public static int getReceiveShardCount()
+    {
+        return shardReceivedPackets.length;
+    }
+
+    public static long getShardReceivedPackets(int shard)
+    {
+        return shardReceivedPackets[shard].sum();
+    }
+
+    public static long getShardReceivedBytes(int shard)
+    {
+        return shardReceivedBytes[shard].sum();
+    }
+
+    public static long getShardDroppedPackets(int shard)
+    {
+        return shardDroppedPackets[shard].sum();
+    }
+
+    /**
+     * 记录一次压缩。
+     *
+     * @param compressedBytes 压缩后的字节数，压缩没有效果时与 rawBytes 相同。
+     */
+    public static void recordCompression(int rawBytes, int compressedBytes, long nanos)
+    {
+        compressionAttempts.increment();
+        bytesBeforeCompression.add(rawBytes);
+        bytesAfterCompression.add(compressedBytes);
+        compressionNanos.add(nanos);
+    }
+
+    public static void recordDecompression(long nanos)
+    {
+        decompressions.increment();
+        decompressionNanos.add(nanos);
+    }
+
+    public static long getCompressionAttempts()
+    {
+        return compressionAttempts.sum();
+    }
+
+    public static long getBytesBeforeCompression()
+    {
+        return bytesBeforeCompression.sum();
+    }
+
+    public static long getBytesAfterCompression()
+    {
+        return bytesAfterCompression.sum();
+    }
+
+    public static long getCompressionNanos()
+    {
+        return compressionNanos.sum();
+    }
+
+    public static long getDecompressions()
+    {
+        return decompressions.sum();
+    }
+
+    public static long getDecompressionNanos()
+    {
+        return decompressionNanos.sum();
+    }
+}
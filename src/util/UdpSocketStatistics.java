@@ -0,0 +1,52 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读取内核记录的 UDP socket 丢包数量。接收缓冲区满时内核直接丢弃数据包，进程内看不到，只能从 /proc/net/udp 与 /proc/net/udp6 读取。
+ * 以 SO_REUSEPORT 打开的每个 socket 各有一行，因此可以看出丢包是否集中在某个分片上。只在 Linux 上可用，其他系统返回空列表。
+ */
+public class UdpSocketStatistics
+{
+    private static final String[] PROC_FILES = {"/proc/net/udp", "/proc/net/udp6"};
+
+    // 每行中本地地址与丢包数量所在的列
+    private static final int LOCAL_ADDRESS_COLUMN = 1;
+    private static final int DROPS_COLUMN = 12;
+
+    /**
+     * 返回绑定在本地端口 port 上的每个 socket 的丢包数量。
+     */
+    public static List<Long> getDrops(int port)
+    {
+        final List<Long> drops = new ArrayList<>();
+        // 本地地址的格式为十六进制的 IP 地址与端口，以冒号分隔
+        final String portSuffix = String.format(":%04X", port);
+        for (String file : PROC_FILES)
+        {
+            final List<String> lines;
+            try
+            {
+                lines = Files.readAllLines(Paths.get(file));
+            }
+            catch (IOException e)
+            {
+                continue;
+            }
+            // 第一行是表头
+            for (int i = 1; i < lines.size(); i++)
+            {
+                final String[] columns = lines.get(i).trim().split("\\s+");
+                if (columns.length > DROPS_COLUMN && columns[LOCAL_ADDRESS_COLUMN].endsWith(portSuffix))
+                {
+                    drops.add(Long.parseLong(columns[DROPS_COLUMN]));
+                }
+            }
+        }
+        return drops;
+    }
+}